@@ -11,4 +11,19 @@ public interface Constants {
     String QUESTION = "question";
 
     Integer THREAD_COUNT = 16;
+
+    /**
+     * metric names
+     */
+    String METRIC_EXACT_LOOKUP = "exact.lookup";
+    String METRIC_EXACT_HIT = "exact.hit";
+    String METRIC_CASCADE_CANDIDATE = "cascade.candidate";
+    String METRIC_CASCADE_PRUNED_LENGTH = "cascade.pruned.length";
+    String METRIC_CASCADE_PRUNED_JACCARD = "cascade.pruned.jaccard";
+    String METRIC_CASCADE_PRUNED_EDIT = "cascade.pruned.edit";
+    String METRIC_CASCADE_SCORED = "cascade.scored";
+    String METRIC_SEGMENT_CACHE_LOOKUP = "segment.cache.lookup";
+    String METRIC_SEGMENT_CACHE_HIT = "segment.cache.hit";
+    String METRIC_SEGMENT_CACHE_MISS = "segment.cache.miss";
+    String METRIC_SEGMENT_CACHE_EVICT = "segment.cache.evict";
 }
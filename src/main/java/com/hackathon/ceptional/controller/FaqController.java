@@ -4,19 +4,27 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.hackathon.ceptional.config.Constants;
 import com.hackathon.ceptional.model.CcsResponse;
+import com.hackathon.ceptional.model.NearestModel;
 import com.hackathon.ceptional.model.RespMessage;
 import com.hackathon.ceptional.model.ResultModel;
+import com.hackathon.ceptional.model.ScoreModel;
 import com.hackathon.ceptional.model.SimilarityModel;
 import com.hackathon.ceptional.service.FaqDataService;
 import com.hackathon.ceptional.service.FaqMatchService;
+import com.hackathon.ceptional.service.SimilarityMatrixService;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * faq methods for client
@@ -41,6 +49,14 @@ public class FaqController {
         this.faqDataService = service;
     }
 
+    private SimilarityMatrixService similarityMatrixService;
+    @Autowired
+    private void setSimilarityMatrixService(SimilarityMatrixService service) {
+        this.similarityMatrixService = service;
+    }
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     @PostMapping("/match")
     public Object match(@RequestBody String request) {
         log.info("match request, param: {}", request);
@@ -79,6 +95,34 @@ public class FaqController {
         return CcsResponse.success(simResult);
     }
 
+    @PostMapping("/similarity/matrix")
+    public Object similarityMatrix(@RequestBody String request) {
+        log.info("similarity matrix request, param length: {}", request.length());
+        List<String> texts = new ArrayList<>();
+        List<String> columns = new ArrayList<>();
+        List<String> metrics = new ArrayList<>();
+        JsonObject jsonObject = JsonParser.parseString(request).getAsJsonObject();
+        if (jsonObject.has("texts")) {
+            jsonObject.getAsJsonArray("texts").forEach(e -> texts.add(e.getAsString()));
+        }
+        if (jsonObject.has("columns")) {
+            jsonObject.getAsJsonArray("columns").forEach(e -> columns.add(e.getAsString()));
+        }
+        if (jsonObject.has("metrics")) {
+            jsonObject.getAsJsonArray("metrics").forEach(e -> metrics.add(e.getAsString()));
+        }
+
+        if (texts.isEmpty() || !SimilarityMatrixService.METRICS.containsAll(metrics)
+                || !similarityMatrixService.acceptable(texts.size(), columns.size())) {
+            log.error("incorrect request data, similarity matrix failed!");
+            return CcsResponse.error(RespMessage.REQUEST_ERROR);
+        }
+
+        // rows are written as they are computed, the whole matrix is never kept
+        StreamingResponseBody body = out -> similarityMatrixService.matrix(texts, columns, metrics, out);
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
     @PostMapping("/jiebaTfidf")
     public Object jiebaTfidf(@RequestBody String request) {
         log.info("jiebaTfidf request, param: {}", request);
@@ -178,4 +222,58 @@ public class FaqController {
         log.info("getSynonym request success, result: {}", result);
         return CcsResponse.success(result);
     }
+
+    @PostMapping("/nearest")
+    public Object nearest(@RequestBody String request) {
+        log.info("nearest request, param: {}", request);
+        String question = "";
+        int radius = -1;
+        JsonObject jsonObject = JsonParser.parseString(request).getAsJsonObject();
+        if (jsonObject.has(Constants.QUESTION)) {
+            question = jsonObject.get(Constants.QUESTION).getAsString();
+        }
+        if (jsonObject.has("radius")) {
+            radius = jsonObject.get("radius").getAsInt();
+        }
+
+        if (StringUtils.isBlank(question) || !faqDataService.acceptableRadius(radius)) {
+            log.error("incorrect request data, nearest failed!");
+            return CcsResponse.error(RespMessage.REQUEST_ERROR);
+        }
+
+        List<NearestModel> result = faqDataService.nearest(question, radius);
+        log.info("nearest request success, result: {}", result);
+        return CcsResponse.success(result);
+    }
+
+    @PostMapping("/explain")
+    public Object explain(@RequestBody String request) {
+        log.info("explain request, param: {}", request);
+        String question = "";
+        int topK = -1;
+        JsonObject jsonObject = JsonParser.parseString(request).getAsJsonObject();
+        if (jsonObject.has(Constants.QUESTION)) {
+            question = jsonObject.get(Constants.QUESTION).getAsString();
+        }
+        if (jsonObject.has("topK")) {
+            topK = jsonObject.get("topK").getAsInt();
+        }
+
+        if (StringUtils.isBlank(question)) {
+            log.error("incorrect request data, explain failed!");
+            return CcsResponse.error(RespMessage.REQUEST_ERROR);
+        }
+
+        question = question.toUpperCase();
+        List<ScoreModel> result = faqMatchService.explain(question, topK);
+        log.info("explain request success, result: {}", result);
+        return CcsResponse.success(result);
+    }
+
+    @PostMapping("/metrics")
+    public Object metrics() {
+        Map<String, Object> result = faqMatchService.metrics();
+        log.info("metrics request success, result: {}", result);
+        return CcsResponse.success(result);
+    }
 }
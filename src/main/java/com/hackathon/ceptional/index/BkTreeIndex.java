@@ -0,0 +1,87 @@
+package com.hackathon.ceptional.index;
+
+import com.hackathon.ceptional.util.SimilarityUtil;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * bk-tree over levenshtein distance, radius query without scanning the corpus
+ *
+ * by triangle inequality, a child at edge distance k of a node at distance d from the query
+ * can only hold texts within radius r if |k - d| <= r, other subtrees are skipped
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+public class BkTreeIndex {
+    private final List<String> texts = new ArrayList<>();
+
+    /**
+     * children of each node, key - edit distance to the node, value - child id
+     */
+    private final List<Map<Integer, Integer>> children = new ArrayList<>();
+
+    /**
+     * add a text, ids must be added in order from 0
+     * @param text - text to index
+     */
+    public void add(String text) {
+        int id = texts.size();
+        texts.add(text);
+        children.add(new HashMap<>(4));
+        if (id == 0) {
+            return;
+        }
+
+        int node = 0;
+        while (true) {
+            int d = SimilarityUtil.ld(text, texts.get(node));
+            Integer child = children.get(node).get(d);
+            if (child == null) {
+                children.get(node).put(d, id);
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * find texts within edit distance radius of the query
+     * @param query - query text
+     * @param radius - max edit distance
+     * @return ids, nearest first
+     */
+    public List<Integer> search(String query, int radius) {
+        List<long[]> hits = new ArrayList<>();
+        if (!texts.isEmpty()) {
+            Deque<Integer> stack = new ArrayDeque<>();
+            stack.push(0);
+            while (!stack.isEmpty()) {
+                int node = stack.pop();
+                int d = SimilarityUtil.ld(query, texts.get(node));
+                if (d <= radius) {
+                    hits.add(new long[]{d, node});
+                }
+                for (Map.Entry<Integer, Integer> entry : children.get(node).entrySet()) {
+                    if (Math.abs(entry.getKey() - d) <= radius) {
+                        stack.push(entry.getValue());
+                    }
+                }
+            }
+        }
+        hits.sort((o1, o2) -> o1[0] != o2[0] ? Long.compare(o1[0], o2[0]) : Long.compare(o1[1], o2[1]));
+        List<Integer> result = new ArrayList<>(hits.size());
+        hits.forEach(hit -> result.add((int) hit[1]));
+        return result;
+    }
+
+    public int size() {
+        return texts.size();
+    }
+}
@@ -0,0 +1,180 @@
+package com.hackathon.ceptional.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * bm25 index over segmented related questions, top-k search uses MaxScore pruning
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+public class Bm25Index {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /**
+     * documents added before build, key - term, value - term frequency
+     */
+    private List<Map<String, Integer>> docs = new ArrayList<>();
+
+    /**
+     * key - term, value - postings with precomputed bm25 term score
+     */
+    private final Map<String, PostingList> postingMap = new HashMap<>();
+
+    /**
+     * add a document, ids must be added in order from 0
+     * @param termFreq - term frequency of the document
+     */
+    public void add(Map<String, Integer> termFreq) {
+        docs.add(termFreq);
+    }
+
+    /**
+     * build posting lists and per-term max scores, no more documents could be added after
+     */
+    public void build() {
+        int n = docs.size();
+        long totalLen = 0;
+        int[] docLen = new int[n];
+        Map<String, List<Integer>> idMap = new HashMap<>();
+        for (int id = 0; id < n; id++) {
+            for (Map.Entry<String, Integer> e : docs.get(id).entrySet()) {
+                docLen[id] += e.getValue();
+                idMap.computeIfAbsent(e.getKey(), k -> new ArrayList<>()).add(id);
+            }
+            totalLen += docLen[id];
+        }
+        double avgLen = n == 0 ? 1 : Math.max((double) totalLen / n, 1);
+
+        idMap.forEach((term, ids) -> {
+            double idf = Math.log(1 + (n - ids.size() + 0.5) / (ids.size() + 0.5));
+            PostingList list = new PostingList(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                int id = ids.get(i);
+                int tf = docs.get(id).get(term);
+                double score = idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * docLen[id] / avgLen));
+                list.ids[i] = id;
+                list.scores[i] = score;
+                list.maxScore = Math.max(list.maxScore, score);
+            }
+            postingMap.put(term, list);
+        });
+        docs = new ArrayList<>();
+    }
+
+    /**
+     * top-k bm25 search, lists whose max score could not lift a document into the top-k are only probed
+     * @param terms - distinct query terms
+     * @param topK - result count
+     * @return document ids, highest score first
+     */
+    public List<Integer> search(Set<String> terms, int topK) {
+        List<PostingList> lists = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            PostingList list = postingMap.get(term);
+            if (list != null) {
+                lists.add(list);
+            }
+        }
+        TopK result = new TopK(topK);
+        if (lists.isEmpty()) {
+            return result.ids();
+        }
+
+        // ascending max score, upperBound[i] is the best score reachable with lists 0..i only
+        lists.sort((o1, o2) -> Double.compare(o1.maxScore, o2.maxScore));
+        int size = lists.size();
+        double[] upperBound = new double[size];
+        int[] cursor = new int[size];
+        for (int i = 0; i < size; i++) {
+            upperBound[i] = lists.get(i).maxScore + (i > 0 ? upperBound[i - 1] : 0);
+        }
+
+        int firstEssential = 0;
+        double threshold = result.threshold();
+        while (true) {
+            // lists before firstEssential could not reach the threshold on their own
+            while (firstEssential < size && upperBound[firstEssential] <= threshold) {
+                firstEssential++;
+            }
+            if (firstEssential == size) {
+                break;
+            }
+
+            int doc = Integer.MAX_VALUE;
+            for (int i = firstEssential; i < size; i++) {
+                PostingList list = lists.get(i);
+                if (cursor[i] < list.ids.length && list.ids[cursor[i]] < doc) {
+                    doc = list.ids[cursor[i]];
+                }
+            }
+            if (doc == Integer.MAX_VALUE) {
+                break;
+            }
+
+            double score = 0;
+            for (int i = firstEssential; i < size; i++) {
+                PostingList list = lists.get(i);
+                if (cursor[i] < list.ids.length && list.ids[cursor[i]] == doc) {
+                    score += list.scores[cursor[i]];
+                    cursor[i]++;
+                }
+            }
+            for (int i = firstEssential - 1; i >= 0; i--) {
+                if (score + upperBound[i] <= threshold) {
+                    // the rest could not lift this document into top-k
+                    break;
+                }
+                PostingList list = lists.get(i);
+                cursor[i] = list.seek(doc, cursor[i]);
+                if (cursor[i] < list.ids.length && list.ids[cursor[i]] == doc) {
+                    score += list.scores[cursor[i]];
+                }
+            }
+
+            if (result.offer(doc, score)) {
+                threshold = result.threshold();
+            }
+        }
+
+        return result.ids();
+    }
+
+    public int termCount() {
+        return postingMap.size();
+    }
+
+    public void clear() {
+        docs = new ArrayList<>();
+        postingMap.clear();
+    }
+
+    private static class PostingList {
+        final int[] ids;
+        final double[] scores;
+        double maxScore;
+
+        PostingList(int size) {
+            ids = new int[size];
+            scores = new double[size];
+        }
+
+        /**
+         * @return first position from start whose id is not less than target
+         */
+        int seek(int target, int start) {
+            if (start >= ids.length || ids[start] >= target) {
+                return start;
+            }
+            int pos = Arrays.binarySearch(ids, start, ids.length, target);
+            return pos >= 0 ? pos : -pos - 1;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.hackathon.ceptional.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * substring containment between the terms of a fixed vocabulary, built once at index build
+ *
+ * term ids are positions in the vocabulary, an edge a -> b means term b is longer than term a and contains it
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/18
+ */
+public class ContainmentGraph {
+    private static final int[] NONE = new int[0];
+
+    /**
+     * sorted ids of the terms containing each term
+     */
+    private final int[][] containers;
+
+    private ContainmentGraph(int[][] containers) {
+        this.containers = containers;
+    }
+
+    /**
+     * build the graph of a vocabulary, candidates of a term are the terms sharing its first character
+     * @param terms - distinct terms, position is the term id
+     * @return containment graph
+     */
+    public static ContainmentGraph build(String[] terms) {
+        Map<Character, List<Integer>> postings = new HashMap<>();
+        for (int id = 0; id < terms.length; id++) {
+            String term = terms[id];
+            for (int i = 0; i < term.length(); i++) {
+                List<Integer> ids = postings.computeIfAbsent(term.charAt(i), k -> new ArrayList<>());
+                // ids are added in order, only the last one could repeat
+                if (ids.isEmpty() || ids.get(ids.size() - 1) != id) {
+                    ids.add(id);
+                }
+            }
+        }
+
+        int[][] containers = new int[terms.length][];
+        for (int id = 0; id < terms.length; id++) {
+            String term = terms[id];
+            List<Integer> found = new ArrayList<>();
+            if (term.isEmpty()) {
+                // the empty term is contained by every other term
+                for (int other = 0; other < terms.length; other++) {
+                    if (other != id) {
+                        found.add(other);
+                    }
+                }
+            } else {
+                for (Integer other : postings.get(term.charAt(0))) {
+                    if (terms[other].length() > term.length() && terms[other].contains(term)) {
+                        found.add(other);
+                    }
+                }
+            }
+            containers[id] = found.isEmpty() ? NONE : found.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return new ContainmentGraph(containers);
+    }
+
+    /**
+     * @return sorted ids of the terms which contain the term, empty for ids out of the vocabulary
+     */
+    public int[] containers(int id) {
+        return id >= 0 && id < containers.length ? containers[id] : NONE;
+    }
+
+    public int size() {
+        return containers.length;
+    }
+
+    /**
+     * @return count of containment edges
+     */
+    public int edges() {
+        int edges = 0;
+        for (int[] ids : containers) {
+            edges += ids.length;
+        }
+        return edges;
+    }
+}
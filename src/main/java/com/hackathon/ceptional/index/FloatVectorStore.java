@@ -0,0 +1,65 @@
+package com.hackathon.ceptional.index;
+
+import java.util.Arrays;
+
+/**
+ * uncompressed vector store, exact cosine distance
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+public class FloatVectorStore implements VectorStore {
+    private final int dim;
+
+    /**
+     * all vectors in one array, id * dim is the offset
+     */
+    private float[] data = new float[0];
+    private int size;
+
+    public FloatVectorStore(int dim) {
+        this.dim = dim;
+    }
+
+    @Override
+    public void add(float[] vector) {
+        if ((size + 1) * dim > data.length) {
+            data = Arrays.copyOf(data, Math.max(dim * 16, data.length * 2));
+        }
+        System.arraycopy(vector, 0, data, size * dim, dim);
+        size++;
+    }
+
+    @Override
+    public QueryDistance prepare(float[] query) {
+        return id -> {
+            int offset = id * dim;
+            float s0 = 0;
+            float s1 = 0;
+            float s2 = 0;
+            float s3 = 0;
+            int i = 0;
+            for (; i + 3 < dim; i += 4) {
+                s0 += query[i] * data[offset + i];
+                s1 += query[i + 1] * data[offset + i + 1];
+                s2 += query[i + 2] * data[offset + i + 2];
+                s3 += query[i + 3] * data[offset + i + 3];
+            }
+            for (; i < dim; i++) {
+                s0 += query[i] * data[offset + i];
+            }
+            return 1 - ((s0 + s1) + (s2 + s3));
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int bytesPerEntry() {
+        return dim * Float.BYTES;
+    }
+}
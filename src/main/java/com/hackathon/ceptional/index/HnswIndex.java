@@ -0,0 +1,297 @@
+package com.hackathon.ceptional.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * hierarchical navigable small world graph over unit vectors, approximate knn by cosine distance
+ *
+ * each node gets a random top level, upper levels are sparse express lanes and level 0 holds every node,
+ * a query walks greedily down from the entry point and runs a best first search of width ef on level 0
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+public class HnswIndex {
+    private static final long SEED = 0x2545F4914F6CDD1DL;
+
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double levelMult;
+    private final Random random = new Random(SEED);
+
+    private final List<float[]> vectors = new ArrayList<>();
+
+    /**
+     * neighbour ids of each node, indexed by level
+     */
+    private final List<int[][]> links = new ArrayList<>();
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    /**
+     * visited marks of each search thread, a node is visited if its mark equals the current stamp
+     */
+    private final ThreadLocal<Visited> visitedLocal = ThreadLocal.withInitial(Visited::new);
+
+    /**
+     * @param m - max neighbours per node on upper levels, twice on level 0
+     * @param efConstruction - search width when linking a new node
+     * @param efSearch - search width of queries
+     */
+    public HnswIndex(int m, int efConstruction, int efSearch) {
+        if (m < 2 || efConstruction < 1 || efSearch < 1) {
+            throw new IllegalArgumentException("need m >= 2, efConstruction >= 1 and efSearch >= 1");
+        }
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = efSearch;
+        this.levelMult = 1 / Math.log(m);
+    }
+
+    /**
+     * add a unit vector, ids are assigned in order from 0, not thread safe
+     * @param vector - l2 normalized vector
+     */
+    public void add(float[] vector) {
+        int id = vectors.size();
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMult);
+        vectors.add(vector);
+        int[][] nodeLinks = new int[level + 1][];
+        Arrays.fill(nodeLinks, new int[0]);
+        links.add(nodeLinks);
+        if (entryPoint < 0) {
+            entryPoint = id;
+            maxLevel = level;
+            return;
+        }
+
+        int ep = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            ep = greedyClosest(vector, ep, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Node> found = searchLayer(vector, ep, efConstruction, l);
+            int maxLinks = l == 0 ? maxM0 : m;
+            int[] neighbours = selectNeighbours(found, maxLinks);
+            nodeLinks[l] = neighbours;
+            for (int n : neighbours) {
+                connect(n, id, l, maxLinks);
+            }
+            ep = found.get(0).id;
+        }
+        if (level > maxLevel) {
+            entryPoint = id;
+            maxLevel = level;
+        }
+    }
+
+    /**
+     * approximate nearest neighbours of a query vector
+     * @param query - l2 normalized vector
+     * @param k - neighbour count
+     * @return ids, nearest first
+     */
+    public List<Integer> search(float[] query, int k) {
+        return search(query, k, efSearch);
+    }
+
+    /**
+     * approximate nearest neighbours with a given search width, larger ef trades latency for recall
+     * @param query - l2 normalized vector
+     * @param k - neighbour count
+     * @param ef - search width
+     * @return ids, nearest first
+     */
+    public List<Integer> search(float[] query, int k, int ef) {
+        List<Integer> result = new ArrayList<>(k);
+        if (entryPoint < 0) {
+            return result;
+        }
+        int ep = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            ep = greedyClosest(query, ep, l);
+        }
+        List<Node> found = searchLayer(query, ep, Math.max(ef, k), 0);
+        for (int i = 0; i < Math.min(k, found.size()); i++) {
+            result.add(found.get(i).id);
+        }
+        return result;
+    }
+
+    public int size() {
+        return vectors.size();
+    }
+
+    /**
+     * cosine distance to a stored vector
+     */
+    public float distance(float[] query, int id) {
+        return 1 - NGramVectorizer.dot(query, vectors.get(id));
+    }
+
+    /**
+     * walk to the closest neighbour until no improvement, for upper levels
+     */
+    private int greedyClosest(float[] query, int ep, int level) {
+        float best = distance(query, ep);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int n : links.get(ep)[level]) {
+                float d = distance(query, n);
+                if (d < best) {
+                    best = d;
+                    ep = n;
+                    changed = true;
+                }
+            }
+        }
+        return ep;
+    }
+
+    /**
+     * best first search of width ef on one level
+     * @return found nodes, nearest first
+     */
+    private List<Node> searchLayer(float[] query, int ep, int ef, int level) {
+        Visited visited = visitedLocal.get();
+        visited.reset(vectors.size());
+        PriorityQueue<Node> candidates = new PriorityQueue<>((o1, o2) -> Float.compare(o1.distance, o2.distance));
+        PriorityQueue<Node> results = new PriorityQueue<>((o1, o2) -> Float.compare(o2.distance, o1.distance));
+        Node start = new Node(ep, distance(query, ep));
+        visited.visit(ep);
+        candidates.add(start);
+        results.add(start);
+
+        while (!candidates.isEmpty()) {
+            Node current = candidates.poll();
+            if (current.distance > results.peek().distance && results.size() >= ef) {
+                break;
+            }
+            for (int n : links.get(current.id)[level]) {
+                if (!visited.visit(n)) {
+                    continue;
+                }
+                float d = distance(query, n);
+                if (results.size() < ef || d < results.peek().distance) {
+                    Node node = new Node(n, d);
+                    candidates.add(node);
+                    results.add(node);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Node> found = new ArrayList<>(results);
+        found.sort((o1, o2) -> Float.compare(o1.distance, o2.distance));
+        return found;
+    }
+
+    /**
+     * neighbour selection heuristic, a candidate is kept only if it is closer to the base than to any kept one,
+     * so links spread over directions; remaining slots are filled with the nearest pruned candidates
+     * @param found - candidates sorted nearest first
+     */
+    private int[] selectNeighbours(List<Node> found, int maxLinks) {
+        int[] selected = new int[Math.min(maxLinks, found.size())];
+        int count = 0;
+        List<Node> pruned = new ArrayList<>();
+        for (Node candidate : found) {
+            if (count == selected.length) {
+                break;
+            }
+            boolean good = true;
+            float[] v = vectors.get(candidate.id);
+            for (int i = 0; i < count; i++) {
+                if (distance(v, selected[i]) < candidate.distance) {
+                    good = false;
+                    break;
+                }
+            }
+            if (good) {
+                selected[count++] = candidate.id;
+            } else {
+                pruned.add(candidate);
+            }
+        }
+        for (int i = 0; count < selected.length; i++) {
+            selected[count++] = pruned.get(i).id;
+        }
+        return selected;
+    }
+
+    /**
+     * add a back link, keep the nearest ones if the node has too many,
+     * cheaper than running the selection heuristic again and measured no worse in recall
+     */
+    private void connect(int node, int neighbour, int level, int maxLinks) {
+        int[][] nodeLinks = links.get(node);
+        int[] current = nodeLinks[level];
+        if (current.length < maxLinks) {
+            int[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = neighbour;
+            nodeLinks[level] = grown;
+            return;
+        }
+
+        float[] v = vectors.get(node);
+        List<Node> found = new ArrayList<>(current.length + 1);
+        for (int n : current) {
+            found.add(new Node(n, distance(v, n)));
+        }
+        found.add(new Node(neighbour, distance(v, neighbour)));
+        found.sort((o1, o2) -> Float.compare(o1.distance, o2.distance));
+        int[] kept = new int[maxLinks];
+        for (int i = 0; i < maxLinks; i++) {
+            kept[i] = found.get(i).id;
+        }
+        nodeLinks[level] = kept;
+    }
+
+    private static class Node {
+        private final int id;
+        private final float distance;
+
+        private Node(int id, float distance) {
+            this.id = id;
+            this.distance = distance;
+        }
+    }
+
+    private static class Visited {
+        private int[] marks = new int[0];
+        private int stamp;
+
+        private void reset(int size) {
+            if (marks.length < size) {
+                marks = new int[Math.max(size, marks.length * 2)];
+                stamp = 0;
+            }
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                stamp = 1;
+            }
+        }
+
+        /**
+         * @return true if not visited before
+         */
+        private boolean visit(int id) {
+            if (marks[id] == stamp) {
+                return false;
+            }
+            marks[id] = stamp;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.hackathon.ceptional.index;
+
+import com.qianxinyao.analysis.jieba.keyword.Keyword;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * inverted index from tf-idf keyword to related question id, for candidate retrieval
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+public class KeywordIndex {
+    /**
+     * key - keyword name, value - postings of question id and keyword tf-idf weight
+     */
+    private final Map<String, List<Posting>> postingMap = new HashMap<>();
+
+    /**
+     * add keywords of one related question
+     * @param id - question id
+     * @param keywords - tf-idf keywords of the question
+     */
+    public void add(int id, List<Keyword> keywords) {
+        for (Keyword keyword : keywords) {
+            postingMap.computeIfAbsent(keyword.getName(), k -> new ArrayList<>())
+                    .add(new Posting(id, keyword.getTfidfvalue()));
+        }
+    }
+
+    /**
+     * retrieve question ids sharing keywords with the query, scored by the sum of tf-idf products
+     * @param keywords - query keywords
+     * @param topN - max candidate count
+     * @return question ids, highest score first
+     */
+    public List<Integer> search(List<Keyword> keywords, int topN) {
+        Map<Integer, Double> scoreMap = new HashMap<>(64);
+        for (Keyword keyword : keywords) {
+            List<Posting> postings = postingMap.get(keyword.getName());
+            if (postings == null) {
+                continue;
+            }
+            for (Posting p : postings) {
+                scoreMap.merge(p.id, keyword.getTfidfvalue() * p.weight, Double::sum);
+            }
+        }
+
+        TopK topK = new TopK(topN);
+        scoreMap.forEach(topK::offer);
+        return topK.ids();
+    }
+
+    public int termCount() {
+        return postingMap.size();
+    }
+
+    public void clear() {
+        postingMap.clear();
+    }
+
+    private static class Posting {
+        final int id;
+        final double weight;
+
+        Posting(int id, double weight) {
+            this.id = id;
+            this.weight = weight;
+        }
+    }
+}
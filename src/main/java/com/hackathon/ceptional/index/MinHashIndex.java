@@ -0,0 +1,152 @@
+package com.hackathon.ceptional.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * minhash lsh index over character shingles, approximates jaccard similarity of shingle sets
+ *
+ * texts with jaccard s collide in at least one band with probability 1 - (1 - s^rows)^bands
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+public class MinHashIndex {
+    private static final long SEED = 20200213L;
+    private static final long ID_MASK = 0xFFFFFFFFL;
+
+    private final int bands;
+    private final int rows;
+    private final int shingle;
+
+    /**
+     * multiply-shift hash functions, one per signature row
+     */
+    private final long[] multipliers;
+    private final long[] increments;
+
+    /**
+     * one table per band, sorted entries of band hash in high 32 bits and id in low 32 bits
+     */
+    private final long[][] tables;
+    private int size;
+
+    public MinHashIndex(int bands, int rows, int shingle) {
+        if (bands < 1 || rows < 1 || shingle < 1) {
+            throw new IllegalArgumentException("bands, rows and shingle must be positive");
+        }
+        this.bands = bands;
+        this.rows = rows;
+        this.shingle = shingle;
+        Random random = new Random(SEED);
+        multipliers = new long[bands * rows];
+        increments = new long[bands * rows];
+        for (int i = 0; i < multipliers.length; i++) {
+            multipliers[i] = random.nextLong() | 1L;
+            increments[i] = random.nextLong();
+        }
+        tables = new long[bands][16];
+    }
+
+    /**
+     * add a text, ids must be added in order from 0, call build after all added
+     * @param text - text to index
+     */
+    public void add(String text) {
+        int id = size++;
+        int[] bandHashes = bandHashes(text);
+        for (int band = 0; band < bands; band++) {
+            if (id == tables[band].length) {
+                tables[band] = Arrays.copyOf(tables[band], id * 2);
+            }
+            tables[band][id] = ((long) bandHashes[band] << 32) | id;
+        }
+    }
+
+    /**
+     * sort band tables for lookup
+     */
+    public void build() {
+        for (int band = 0; band < bands; band++) {
+            tables[band] = Arrays.copyOf(tables[band], size);
+            Arrays.sort(tables[band]);
+        }
+    }
+
+    /**
+     * find ids colliding with the query in any band
+     * @param query - query text
+     * @param topN - max candidate count, ids colliding in more bands first
+     * @return candidate ids
+     */
+    public List<Integer> search(String query, int topN) {
+        int[] bandHashes = bandHashes(query);
+        Map<Integer, Integer> hitMap = new HashMap<>(64);
+        for (int band = 0; band < bands; band++) {
+            long[] table = tables[band];
+            long low = (long) bandHashes[band] << 32;
+            int pos = Arrays.binarySearch(table, low);
+            pos = pos >= 0 ? pos : -pos - 1;
+            for (; pos < table.length && (table[pos] & ~ID_MASK) == low; pos++) {
+                hitMap.merge((int) (table[pos] & ID_MASK), 1, Integer::sum);
+            }
+        }
+
+        TopK topK = new TopK(topN);
+        hitMap.forEach(topK::offer);
+        return topK.ids();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * minhash signature folded into one hash per band
+     */
+    private int[] bandHashes(String text) {
+        int count = Math.max(text.length() - shingle + 1, 1);
+        long[] shingles = new long[count];
+        for (int i = 0; i < count; i++) {
+            long h = 0;
+            for (int j = i; j < Math.min(i + shingle, text.length()); j++) {
+                h = (h << 16) | text.charAt(j);
+            }
+            shingles[i] = mix(h);
+        }
+
+        int[] bandHashes = new int[bands];
+        for (int band = 0; band < bands; band++) {
+            long bandHash = band;
+            for (int row = 0; row < rows; row++) {
+                int fn = band * rows + row;
+                long min = Long.MAX_VALUE;
+                for (long s : shingles) {
+                    long h = (multipliers[fn] * s + increments[fn]) >>> 32;
+                    if (h < min) {
+                        min = h;
+                    }
+                }
+                bandHash = bandHash * 0x9E3779B97F4A7C15L + min;
+            }
+            bandHashes[band] = (int) (mix(bandHash) >>> 32);
+        }
+        return bandHashes;
+    }
+
+    /**
+     * 64 bit finalizer of murmur3
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
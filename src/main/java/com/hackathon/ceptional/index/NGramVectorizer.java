@@ -0,0 +1,82 @@
+package com.hackathon.ceptional.index;
+
+/**
+ * feature hashed character n-gram vectors, unit length so that cosine similarity is the dot product
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+public class NGramVectorizer {
+    private final int dim;
+    private final int maxN;
+
+    /**
+     * @param dim - vector dimension
+     * @param maxN - n-grams of length 1 to maxN are hashed
+     */
+    public NGramVectorizer(int dim, int maxN) {
+        if (dim < 1 || maxN < 1 || maxN > 4) {
+            throw new IllegalArgumentException("need dim >= 1 and 1 <= maxN <= 4");
+        }
+        this.dim = dim;
+        this.maxN = maxN;
+    }
+
+    public int dim() {
+        return dim;
+    }
+
+    /**
+     * hashed n-gram vector of a text, signed buckets to keep collisions unbiased
+     * @param text - input text
+     * @return l2 normalized vector, all zero for empty text
+     */
+    public float[] vector(String text) {
+        float[] v = new float[dim];
+        for (int n = 1; n <= maxN; n++) {
+            for (int i = 0; i + n <= text.length(); i++) {
+                long gram = n;
+                for (int j = i; j < i + n; j++) {
+                    gram = (gram << 16) | text.charAt(j);
+                }
+                long h = MinHashIndex.mix(gram);
+                int bucket = (int) ((h >>> 1) % dim);
+                v[bucket] += (h & 1) == 0 ? 1f : -1f;
+            }
+        }
+
+        double norm = 0;
+        for (float x : v) {
+            norm += x * x;
+        }
+        if (norm > 0) {
+            float inv = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < dim; i++) {
+                v[i] *= inv;
+            }
+        }
+        return v;
+    }
+
+    /**
+     * dot product, four partial sums so that the additions do not wait on each other
+     */
+    public static float dot(float[] a, float[] b) {
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int i = 0;
+        for (; i + 3 < a.length; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+}
@@ -0,0 +1,163 @@
+package com.hackathon.ceptional.index;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * product quantized vector store, each vector is split into subspaces and every sub vector is stored
+ * as the one byte id of its nearest centroid
+ *
+ * distances are asymmetric: the query stays exact, a table of query and centroid inner products is built
+ * once per query, and the distance to a stored vector is a sum of one table lookup per subspace
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+public class PqVectorStore implements VectorStore {
+    private static final int CENTROIDS = 256;
+    private static final int ITERATIONS = 10;
+    private static final long SEED = 0x5DEECE66DL;
+
+    private final int subspaces;
+    private final int subDim;
+
+    /**
+     * centroids of each subspace, [subspace][centroid * subDim + j]
+     */
+    private final float[][] codebooks;
+    private boolean trained;
+
+    /**
+     * all codes in one array, id * subspaces is the offset
+     */
+    private byte[] codes = new byte[0];
+    private int size;
+
+    /**
+     * @param dim - vector dimension
+     * @param subspaces - code bytes per vector, must divide dim
+     */
+    public PqVectorStore(int dim, int subspaces) {
+        if (subspaces < 1 || dim % subspaces != 0) {
+            throw new IllegalArgumentException("subspaces must divide dim");
+        }
+        this.subspaces = subspaces;
+        this.subDim = dim / subspaces;
+        this.codebooks = new float[subspaces][CENTROIDS * subDim];
+    }
+
+    /**
+     * train codebooks by k-means on a sample, must be called before add
+     * @param sample - sample vectors, the more the better up to some ten thousands
+     */
+    public void train(List<float[]> sample) {
+        if (sample.isEmpty()) {
+            throw new IllegalArgumentException("empty training sample");
+        }
+        Random random = new Random(SEED);
+        int[] assign = new int[sample.size()];
+        for (int s = 0; s < subspaces; s++) {
+            float[] codebook = codebooks[s];
+            int offset = s * subDim;
+            for (int c = 0; c < CENTROIDS; c++) {
+                System.arraycopy(sample.get(random.nextInt(sample.size())), offset, codebook, c * subDim, subDim);
+            }
+
+            for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+                for (int i = 0; i < sample.size(); i++) {
+                    assign[i] = nearestCentroid(codebook, sample.get(i), offset);
+                }
+                float[] sums = new float[CENTROIDS * subDim];
+                int[] counts = new int[CENTROIDS];
+                for (int i = 0; i < sample.size(); i++) {
+                    float[] v = sample.get(i);
+                    counts[assign[i]]++;
+                    for (int j = 0; j < subDim; j++) {
+                        sums[assign[i] * subDim + j] += v[offset + j];
+                    }
+                }
+                for (int c = 0; c < CENTROIDS; c++) {
+                    if (counts[c] == 0) {
+                        // empty cluster, restart it from a random sample
+                        System.arraycopy(sample.get(random.nextInt(sample.size())), offset, codebook, c * subDim,
+                                subDim);
+                        continue;
+                    }
+                    for (int j = 0; j < subDim; j++) {
+                        codebook[c * subDim + j] = sums[c * subDim + j] / counts[c];
+                    }
+                }
+            }
+        }
+        trained = true;
+    }
+
+    @Override
+    public void add(float[] vector) {
+        if (!trained) {
+            throw new IllegalStateException("codebooks not trained");
+        }
+        if ((size + 1) * subspaces > codes.length) {
+            codes = Arrays.copyOf(codes, Math.max(subspaces * 16, codes.length * 2));
+        }
+        int base = size * subspaces;
+        for (int s = 0; s < subspaces; s++) {
+            codes[base + s] = (byte) nearestCentroid(codebooks[s], vector, s * subDim);
+        }
+        size++;
+    }
+
+    @Override
+    public QueryDistance prepare(float[] query) {
+        // table[s * 256 + c] - inner product of query sub vector s and centroid c
+        float[] table = new float[subspaces * CENTROIDS];
+        for (int s = 0; s < subspaces; s++) {
+            float[] codebook = codebooks[s];
+            int offset = s * subDim;
+            for (int c = 0; c < CENTROIDS; c++) {
+                float dot = 0;
+                for (int j = 0; j < subDim; j++) {
+                    dot += query[offset + j] * codebook[c * subDim + j];
+                }
+                table[s * CENTROIDS + c] = dot;
+            }
+        }
+        return id -> {
+            int base = id * subspaces;
+            float dot = 0;
+            for (int s = 0; s < subspaces; s++) {
+                dot += table[s * CENTROIDS + (codes[base + s] & 0xFF)];
+            }
+            return 1 - dot;
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int bytesPerEntry() {
+        return subspaces;
+    }
+
+    private int nearestCentroid(float[] codebook, float[] v, int offset) {
+        int best = 0;
+        float bestDistance = Float.MAX_VALUE;
+        for (int c = 0; c < CENTROIDS; c++) {
+            float distance = 0;
+            for (int j = 0; j < subDim; j++) {
+                float diff = v[offset + j] - codebook[c * subDim + j];
+                distance += diff * diff;
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        return best;
+    }
+}
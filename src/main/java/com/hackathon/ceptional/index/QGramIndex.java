@@ -0,0 +1,148 @@
+package com.hackathon.ceptional.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * character q-gram index with length and count filtering,
+ * candidates returned could reach the edit similarity floor, all the others provably could not
+ *
+ * edit similarity is 1 - ld / max(len1, len2), the same as SimilarityUtil.sim
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+public class QGramIndex {
+    private static final int MAX_Q = 4;
+    private static final double EPSILON = 1e-9;
+
+    private final int q;
+
+    /**
+     * key - packed q-gram, value - postings of question id and gram count in that question
+     */
+    private final Map<Long, Postings> postingMap = new HashMap<>();
+
+    /**
+     * text length of each id
+     */
+    private final List<Integer> lengthList = new ArrayList<>();
+
+    /**
+     * ids grouped by text length, for short texts which could pass without sharing any q-gram
+     */
+    private final Map<Integer, List<Integer>> lengthMap = new HashMap<>();
+
+    public QGramIndex(int q) {
+        if (q < 1 || q > MAX_Q) {
+            throw new IllegalArgumentException("q must be in [1, " + MAX_Q + "]: " + q);
+        }
+        this.q = q;
+    }
+
+    /**
+     * add a text, ids must be added in order from 0
+     * @param text - text to index
+     */
+    public void add(String text) {
+        int id = lengthList.size();
+        lengthList.add(text.length());
+        lengthMap.computeIfAbsent(text.length(), k -> new ArrayList<>()).add(id);
+        gramCount(text).forEach((gram, count) ->
+                postingMap.computeIfAbsent(gram, k -> new Postings()).add(id, count));
+    }
+
+    /**
+     * find ids whose edit similarity to the query could reach minSim
+     * @param query - query text
+     * @param minSim - edit similarity floor
+     * @param topN - max candidate count, candidates sharing more q-grams first
+     * @return candidate ids
+     */
+    public List<Integer> search(String query, double minSim, int topN) {
+        int n = query.length();
+        Map<Integer, Integer> commonMap = new HashMap<>(64);
+        gramCount(query).forEach((gram, count) -> {
+            Postings postings = postingMap.get(gram);
+            if (postings != null) {
+                for (int i = 0; i < postings.size; i++) {
+                    commonMap.merge(postings.ids[i], Math.min(count, postings.counts[i]), Integer::sum);
+                }
+            }
+        });
+
+        TopK topK = new TopK(topN);
+        // count filter, each edit destroys at most q grams
+        commonMap.forEach((id, common) -> {
+            int m = lengthList.get(id);
+            int k = maxDistance(n, m, minSim);
+            if (Math.abs(n - m) <= k && common >= Math.max(n, m) - q + 1 - k * q) {
+                topK.offer(id, common);
+            }
+        });
+
+        // length filter only, texts too short for the count filter to prune anything
+        for (Map.Entry<Integer, List<Integer>> e : lengthMap.entrySet()) {
+            int m = e.getKey();
+            int k = maxDistance(n, m, minSim);
+            if (Math.abs(n - m) <= k && Math.max(n, m) - q + 1 - k * q <= 0) {
+                for (Integer id : e.getValue()) {
+                    if (!commonMap.containsKey(id)) {
+                        topK.offer(id, 0);
+                    }
+                }
+            }
+        }
+
+        return topK.ids();
+    }
+
+    public int gramCount() {
+        return postingMap.size();
+    }
+
+    public void clear() {
+        postingMap.clear();
+        lengthList.clear();
+        lengthMap.clear();
+    }
+
+    /**
+     * max edit distance allowed to keep 1 - distance / max(n, m) not less than minSim
+     */
+    private static int maxDistance(int n, int m, double minSim) {
+        return (int) Math.floor((1 - minSim) * Math.max(n, m) + EPSILON);
+    }
+
+    private Map<Long, Integer> gramCount(String text) {
+        Map<Long, Integer> countMap = new HashMap<>(text.length() * 2);
+        for (int i = 0; i + q <= text.length(); i++) {
+            long gram = 0;
+            for (int j = i; j < i + q; j++) {
+                gram = (gram << 16) | text.charAt(j);
+            }
+            countMap.merge(gram, 1, Integer::sum);
+        }
+        return countMap;
+    }
+
+    private static class Postings {
+        int[] ids = new int[4];
+        int[] counts = new int[4];
+        int size;
+
+        void add(int id, int count) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            ids[size] = id;
+            counts[size] = count;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.hackathon.ceptional.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 64 bit simhash over characters, with permuted-prefix tables for hamming distance lookup
+ *
+ * questions are short, one edit changes a much larger share of bigrams than of characters,
+ * so characters are used as features to keep small variations within a few bits
+ *
+ * fingerprint is split into distance + 1 blocks, by pigeonhole principle any fingerprint within distance bits
+ * equals the query on at least one block, so one table is kept per block
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+public class SimHashIndex {
+    private static final long ID_MASK = 0xFFFFFFFFL;
+    private static final int BITS = 64;
+
+    private final int distance;
+    private final int[] blockStart;
+    private final int[] blockLength;
+
+    /**
+     * one table per block, sorted entries of block value in high 32 bits and id in low 32 bits
+     */
+    private final long[][] tables;
+    private long[] fingerprints = new long[16];
+    private int size;
+
+    public SimHashIndex(int distance) {
+        if (distance < 1 || distance >= BITS / 2) {
+            throw new IllegalArgumentException("distance must be in [1, " + (BITS / 2 - 1) + "]: " + distance);
+        }
+        this.distance = distance;
+        int blocks = distance + 1;
+        blockStart = new int[blocks];
+        blockLength = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            blockStart[i] = i * BITS / blocks;
+            blockLength[i] = (i + 1) * BITS / blocks - blockStart[i];
+        }
+        tables = new long[blocks][];
+    }
+
+    /**
+     * add a text, ids must be added in order from 0, call build after all added
+     * @param text - text to index
+     */
+    public void add(String text) {
+        if (size == fingerprints.length) {
+            fingerprints = Arrays.copyOf(fingerprints, size * 2);
+        }
+        fingerprints[size++] = fingerprint(text);
+    }
+
+    /**
+     * build block tables
+     */
+    public void build() {
+        fingerprints = Arrays.copyOf(fingerprints, size);
+        for (int block = 0; block < tables.length; block++) {
+            long[] table = new long[size];
+            for (int id = 0; id < size; id++) {
+                table[id] = (block(fingerprints[id], block) << 32) | id;
+            }
+            Arrays.sort(table);
+            tables[block] = table;
+        }
+    }
+
+    /**
+     * find ids whose fingerprint is within the index distance from the query
+     * @param query - query text
+     * @return ids, nearest first
+     */
+    public List<Integer> search(String query) {
+        long fp = fingerprint(query);
+        List<long[]> hits = new ArrayList<>();
+        for (int block = 0; block < tables.length; block++) {
+            long[] table = tables[block];
+            long low = block(fp, block) << 32;
+            int pos = Arrays.binarySearch(table, low);
+            pos = pos >= 0 ? pos : -pos - 1;
+            for (; pos < table.length && (table[pos] & ~ID_MASK) == low; pos++) {
+                int id = (int) (table[pos] & ID_MASK);
+                int d = Long.bitCount(fp ^ fingerprints[id]);
+                // the same id could match on several blocks, only count it on the first one
+                if (d <= distance && firstMatchBlock(fp, fingerprints[id]) == block) {
+                    hits.add(new long[]{d, id});
+                }
+            }
+        }
+        hits.sort((o1, o2) -> Long.compare(o1[0], o2[0]));
+        List<Integer> result = new ArrayList<>(hits.size());
+        hits.forEach(hit -> result.add((int) hit[1]));
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * simhash of characters
+     * @param text - input text
+     * @return 64 bit fingerprint
+     */
+    public static long fingerprint(String text) {
+        int[] weights = new int[BITS];
+        for (int i = 0; i < text.length(); i++) {
+            long h = mix(text.charAt(i));
+            for (int bit = 0; bit < BITS; bit++) {
+                weights[bit] += ((h >>> bit) & 1L) == 1L ? 1 : -1;
+            }
+        }
+
+        long fp = 0;
+        for (int bit = 0; bit < BITS; bit++) {
+            if (weights[bit] > 0) {
+                fp |= 1L << bit;
+            }
+        }
+        return fp;
+    }
+
+    private long block(long fp, int block) {
+        return (fp >>> blockStart[block]) & ((1L << blockLength[block]) - 1);
+    }
+
+    private int firstMatchBlock(long fp1, long fp2) {
+        for (int block = 0; block < tables.length; block++) {
+            if (block(fp1, block) == block(fp2, block)) {
+                return block;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 64 bit finalizer of murmur3
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
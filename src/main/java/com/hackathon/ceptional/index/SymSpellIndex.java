@@ -0,0 +1,140 @@
+package com.hackathon.ceptional.index;
+
+import com.hackathon.ceptional.util.SimilarityUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * symmetric deletion index (SymSpell), finds texts within a small edit distance without scanning the corpus
+ *
+ * two texts within edit distance d share a variant made by deleting at most d characters from each prefix,
+ * so only deletions of the first prefixLength characters are indexed, keyed by 64 bit hash
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+public class SymSpellIndex {
+    private final int maxDistance;
+    private final int prefixLength;
+
+    /**
+     * key - hash of a deletion variant, value - ids having that variant, filled by build
+     */
+    private final Map<Long, int[]> deleteMap = new HashMap<>();
+
+    /**
+     * postings collected by add, compacted into deleteMap by build
+     */
+    private final Map<Long, List<Integer>> pending = new HashMap<>();
+    private final List<String> texts = new ArrayList<>();
+
+    public SymSpellIndex(int maxDistance, int prefixLength) {
+        if (maxDistance < 1 || prefixLength <= maxDistance) {
+            throw new IllegalArgumentException("need 1 <= maxDistance < prefixLength");
+        }
+        this.maxDistance = maxDistance;
+        this.prefixLength = prefixLength;
+    }
+
+    /**
+     * add a text, ids must be added in order from 0, call build after all added
+     * @param text - text to index
+     */
+    public void add(String text) {
+        int id = texts.size();
+        texts.add(text);
+        for (String variant : deletes(text)) {
+            List<Integer> ids = pending.computeIfAbsent(hash(variant), k -> new ArrayList<>(4));
+            // variants of a text are distinct but could collide by hash
+            if (ids.isEmpty() || ids.get(ids.size() - 1) != id) {
+                ids.add(id);
+            }
+        }
+    }
+
+    /**
+     * compact the collected postings for lookup
+     */
+    public void build() {
+        pending.forEach((h, ids) -> deleteMap.put(h, ids.stream().mapToInt(Integer::intValue).toArray()));
+        pending.clear();
+    }
+
+    /**
+     * find texts within max edit distance of the query
+     * @param query - query text
+     * @return ids, nearest first
+     */
+    public List<Integer> search(String query) {
+        Set<Integer> visited = new HashSet<>();
+        List<long[]> hits = new ArrayList<>();
+        for (String variant : deletes(query)) {
+            int[] ids = deleteMap.get(hash(variant));
+            if (ids == null) {
+                continue;
+            }
+            for (int id : ids) {
+                if (!visited.add(id)) {
+                    continue;
+                }
+                String text = texts.get(id);
+                if (Math.abs(text.length() - query.length()) > maxDistance) {
+                    continue;
+                }
+                int d = SimilarityUtil.ld(query, text, maxDistance);
+                if (d <= maxDistance) {
+                    hits.add(new long[]{d, id});
+                }
+            }
+        }
+        hits.sort((o1, o2) -> Long.compare(o1[0], o2[0]));
+        List<Integer> result = new ArrayList<>(hits.size());
+        hits.forEach(hit -> result.add((int) hit[1]));
+        return result;
+    }
+
+    public int variantCount() {
+        return deleteMap.size();
+    }
+
+    /**
+     * all variants of the prefix with at most maxDistance characters deleted, the prefix itself included
+     */
+    private Set<String> deletes(String text) {
+        String prefix = text.length() > prefixLength ? text.substring(0, prefixLength) : text;
+        Set<String> result = new HashSet<>();
+        result.add(prefix);
+        List<String> current = new ArrayList<>(result);
+        for (int d = 0; d < maxDistance; d++) {
+            List<String> next = new ArrayList<>();
+            for (String s : current) {
+                for (int i = 0; i < s.length(); i++) {
+                    String variant = s.substring(0, i) + s.substring(i + 1);
+                    if (result.add(variant)) {
+                        next.add(variant);
+                    }
+                }
+            }
+            current = next;
+        }
+        return result;
+    }
+
+    private static long hash(String s) {
+        long h = 1125899906842597L;
+        for (int i = 0; i < s.length(); i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        // murmur3 finalizer
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,82 @@
+package com.hackathon.ceptional.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * bounded min heap to keep the k highest scored ids
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+public class TopK {
+    private final int k;
+    private final PriorityQueue<Entry> heap;
+
+    /**
+     * initial heap capacity at most, the heap grows on demand so that a large k does not allocate up front
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    public TopK(int k) {
+        this.k = Math.max(k, 1);
+        this.heap = new PriorityQueue<>(Math.min(this.k, INITIAL_CAPACITY) + 1,
+                (o1, o2) -> Double.compare(o1.score, o2.score));
+    }
+
+    /**
+     * offer a scored id, kept only if it is among the k highest seen so far
+     * @param id - item id
+     * @param score - item score
+     * @return true if kept
+     */
+    public boolean offer(int id, double score) {
+        if (heap.size() < k) {
+            heap.add(new Entry(id, score));
+            return true;
+        }
+        if (score > heap.peek().score) {
+            heap.poll();
+            heap.add(new Entry(id, score));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * lowest score still kept, any new score must exceed it to enter
+     * @return k-th score, or negative infinity if not full yet
+     */
+    public double threshold() {
+        return heap.size() < k ? Double.NEGATIVE_INFINITY : heap.peek().score;
+    }
+
+    public int size() {
+        return heap.size();
+    }
+
+    /**
+     * @return ids ordered from highest to lowest score
+     */
+    public List<Integer> ids() {
+        List<Entry> entries = new ArrayList<>(heap);
+        entries.sort((o1, o2) -> Double.compare(o2.score, o1.score));
+        List<Integer> result = new ArrayList<>(entries.size());
+        for (Entry e : entries) {
+            result.add(e.id);
+        }
+        return result;
+    }
+
+    private static class Entry {
+        final int id;
+        final double score;
+
+        Entry(int id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+}
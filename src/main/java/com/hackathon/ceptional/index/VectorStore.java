@@ -0,0 +1,55 @@
+package com.hackathon.ceptional.index;
+
+import java.util.List;
+
+/**
+ * storage of unit vectors with query distance, ids are assigned in order from 0
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+public interface VectorStore {
+
+    /**
+     * add a vector, not thread safe
+     * @param vector - l2 normalized vector
+     */
+    void add(float[] vector);
+
+    /**
+     * prepare a query once, so that distances to stored vectors are cheap
+     * @param query - l2 normalized vector
+     * @return cosine distance of the query to a stored id
+     */
+    QueryDistance prepare(float[] query);
+
+    int size();
+
+    /**
+     * heap bytes taken by one stored vector, shared tables excluded
+     */
+    int bytesPerEntry();
+
+    /**
+     * nearest stored ids by scanning all
+     * @param query - l2 normalized vector
+     * @param k - id count
+     * @return ids, nearest first
+     */
+    default List<Integer> search(float[] query, int k) {
+        QueryDistance distance = prepare(query);
+        TopK topK = new TopK(k);
+        for (int id = 0; id < size(); id++) {
+            topK.offer(id, -distance.distance(id));
+        }
+        return topK.ids();
+    }
+
+    /**
+     * distance from a prepared query
+     */
+    interface QueryDistance {
+        float distance(int id);
+    }
+}
@@ -0,0 +1,28 @@
+package com.hackathon.ceptional.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * nearest related question model
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+public class NearestModel {
+    private String question;
+    private String answer;
+    private int distance;
+
+    @Override
+    public String toString() {
+        return "question:".concat(question)
+                .concat(", answer:").concat(answer)
+                .concat(", distance:").concat(String.valueOf(distance));
+    }
+}
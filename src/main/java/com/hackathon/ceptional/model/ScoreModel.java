@@ -0,0 +1,70 @@
+package com.hackathon.ceptional.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.text.DecimalFormat;
+
+/**
+ * score of a related question with its components, kept as raw values and only formatted when asked
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+@Getter
+@Setter
+public class ScoreModel {
+    /**
+     * faq key and related question, filled for explanations
+     */
+    private int key = -1;
+    private String question;
+
+    /**
+     * sentence similarity part and its ratio
+     */
+    private double sim;
+    private int simRatio;
+
+    /**
+     * tfidf similarity part, its ratio and the count of shared keywords, hitCount -1 if not used
+     */
+    private double tfidfSim;
+    private int tfRatio;
+    private long hitCount = -1;
+
+    /**
+     * score of the scorer pipeline
+     */
+    private double score;
+
+    /**
+     * word frequency count of the faq and the score after frequency adjustment, filled for explanations
+     */
+    private int freqCount;
+    private double adjustedScore;
+
+    public ScoreModel(double sim, int simRatio, double tfidfSim, int tfRatio, long hitCount, double score) {
+        this.sim = sim;
+        this.simRatio = simRatio;
+        this.tfidfSim = tfidfSim;
+        this.tfRatio = tfRatio;
+        this.hitCount = hitCount;
+        this.score = score;
+    }
+
+    /**
+     * breakdown as "sim * simRatio & tfidfSim * tfRatio, count: hitCount"
+     */
+    public String getInfo() {
+        DecimalFormat df = new DecimalFormat("0.00");
+        String info = df.format(sim) + " * " + simRatio + " & " + df.format(tfidfSim) + " * " + tfRatio;
+        return hitCount < 0 ? info : info + ", count: " + hitCount;
+    }
+
+    @Override
+    public String toString() {
+        return getInfo();
+    }
+}
@@ -1,13 +1,37 @@
 package com.hackathon.ceptional.service;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.hackathon.ceptional.config.Constants;
+import com.hackathon.ceptional.index.BkTreeIndex;
+import com.hackathon.ceptional.index.Bm25Index;
+import com.hackathon.ceptional.index.ContainmentGraph;
+import com.hackathon.ceptional.index.FloatVectorStore;
+import com.hackathon.ceptional.index.HnswIndex;
+import com.hackathon.ceptional.index.KeywordIndex;
+import com.hackathon.ceptional.index.MinHashIndex;
+import com.hackathon.ceptional.index.NGramVectorizer;
+import com.hackathon.ceptional.index.PqVectorStore;
+import com.hackathon.ceptional.index.QGramIndex;
+import com.hackathon.ceptional.index.SimHashIndex;
+import com.hackathon.ceptional.index.SymSpellIndex;
+import com.hackathon.ceptional.index.TopK;
+import com.hackathon.ceptional.index.VectorStore;
+import com.hackathon.ceptional.model.NearestModel;
+import com.hackathon.ceptional.model.ScoreModel;
+import com.hackathon.ceptional.util.CharSignature;
 import com.hackathon.ceptional.util.ExcelUtil;
 import com.hackathon.ceptional.util.HuToolUtil;
+import com.hackathon.ceptional.util.MetricsUtil;
+import com.hackathon.ceptional.util.SegmentUtil;
 import com.hackathon.ceptional.util.SimilarityUtil;
+import com.hackathon.ceptional.util.SparseTermVector;
+import com.hackathon.ceptional.util.TermDictionary;
 import com.qianxinyao.analysis.jieba.keyword.Keyword;
 import com.qianxinyao.analysis.jieba.keyword.TFIDFAnalyzer;
 import javafx.util.Pair;
@@ -25,17 +49,15 @@ import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.net.URI;
-import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.function.Function;
 import java.util.Map.Entry;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
-import static java.util.stream.Collectors.toList;
 
 /**
  * data init methods, from provided training set
@@ -80,6 +102,89 @@ public class FaqDataService {
      */
     private ConcurrentHashMap<String, List<String> > synonymMap = new ConcurrentHashMap<>();
 
+    /**
+     * key - faq or related question without space and punctuation, value - index of answers
+     */
+    private ConcurrentHashMap<String, Integer> exactMap = new ConcurrentHashMap<>();
+
+    /**
+     * flattened related questions, list index is the question id used by retrieval indexes
+     */
+    private List<String> questionList = new ArrayList<>();
+
+    /**
+     * faq key of each question id
+     */
+    private List<Integer> questionKeyList = new ArrayList<>();
+
+    /**
+     * precomputed features of each question id, and of the related questions of each faq key in faqMap order
+     */
+    private List<FaqFeatures> featureList = new ArrayList<>();
+    private ConcurrentHashMap<Integer, List<FaqFeatures>> faqFeatureMap = new ConcurrentHashMap<>();
+
+    /**
+     * segmented terms and tfidf keyword names of related questions are numbered by these dictionaries
+     */
+    private TermDictionary termDictionary = new TermDictionary();
+    private TermDictionary keywordDictionary = new TermDictionary();
+
+    /**
+     * substring containment between faq keywords, by keyword dictionary id
+     */
+    private ContainmentGraph keywordGraph = ContainmentGraph.build(new String[0]);
+
+    /**
+     * character signatures of all related questions by question id, column wise for the cascade bounds
+     */
+    private FaqFeatures.SignatureColumns signatureColumns = FaqFeatures.SignatureColumns.EMPTY;
+
+    /**
+     * inverted index from tf-idf keyword to question id
+     */
+    private KeywordIndex keywordIndex = new KeywordIndex();
+
+    /**
+     * bm25 index over segmented related questions
+     */
+    private Bm25Index bm25Index = new Bm25Index();
+
+    /**
+     * character q-gram index for edit similarity filtering
+     */
+    private QGramIndex qGramIndex = new QGramIndex(2);
+
+    /**
+     * minhash lsh index over character shingles, jaccard near candidates
+     */
+    private MinHashIndex minHashIndex;
+
+    /**
+     * simhash index for near duplicate questions
+     */
+    private SimHashIndex simHashIndex;
+
+    /**
+     * symmetric deletion index for typo tolerant lookup
+     */
+    private SymSpellIndex symSpellIndex;
+
+    /**
+     * bk-tree over edit distance, for radius retrieval and nearest question lookup
+     */
+    private BkTreeIndex bkTreeIndex = new BkTreeIndex();
+
+    /**
+     * hnsw graph over hashed character n-gram vectors, dense approximate knn retrieval
+     */
+    private HnswIndex hnswIndex;
+    private NGramVectorizer vectorizer;
+
+    /**
+     * question vectors for scan retrieval, float or product quantized
+     */
+    private VectorStore vectorStore;
+
     private static final int SHEET_COUNT = 2;
 
     /**
@@ -90,7 +195,6 @@ public class FaqDataService {
     private TFIDFAnalyzer tfidfAnalyzer = new TFIDFAnalyzer();
 
     private static final NumberFormat NF = NumberFormat.getInstance();
-    private static final DecimalFormat DF = new DecimalFormat("0.00");
     private static final String NUMERIC_SPLIT_COMMA = ",";
     private Pattern symbolPattern = Pattern.compile("[`~☆★!@#$%^&*()+=|{}':;,\\[\\]》·.<>/?~！@#￥%……（）——+|{}【】‘；：”“’。，、？]");
     private Pattern numPattern = Pattern.compile("^[-\\+]?[\\d]*$");
@@ -146,8 +250,113 @@ public class FaqDataService {
     @Value("${faq.exclude.threshold}")
     private double excludeThreshold = 0.85;
 
+    /**
+     * candidate retrieval, full scan scores every related question of every faq
+     */
+    @Value("${faq.retrieval.full.scan}")
+    private boolean fullScan = false;
+    @Value("${faq.retrieval.top.count}")
+    private int retrievalTopCount = 100;
+    /**
+     * candidate sources separated by comma, candidates of all sources are scored
+     */
+    @Value("${faq.retrieval.method}")
+    private String retrievalMethod = KEYWORD;
+    private List<String> retrievalMethodList = new ArrayList<>();
+    @Value("${faq.qgram.size}")
+    private int qGramSize = 2;
+    /**
+     * edit similarity floor, questions which could not reach it are not retrieved
+     */
+    @Value("${faq.qgram.min.sim}")
+    private double qGramMinSim = 0.3;
+    @Value("${faq.minhash.bands}")
+    private int minHashBands = 16;
+    @Value("${faq.minhash.rows}")
+    private int minHashRows = 4;
+    @Value("${faq.minhash.shingle}")
+    private int minHashShingle = 1;
+    @Value("${faq.symspell.distance}")
+    private int symSpellDistance = 2;
+    @Value("${faq.symspell.prefix}")
+    private int symSpellPrefix = 10;
+    /**
+     * default edit distance radius of bk-tree retrieval and nearest lookup
+     */
+    @Value("${faq.bktree.radius}")
+    private int bkTreeRadius = 2;
+    /**
+     * max edit distance radius a nearest request may ask for, larger ones prune nothing and scan every question
+     */
+    @Value("${faq.bktree.max.radius}")
+    private int bkTreeMaxRadius = 4;
+    @Value("${faq.vector.dim}")
+    private int vectorDim = 256;
+    /**
+     * character n-grams of length 1 to vectorNgram are hashed into vectors
+     */
+    @Value("${faq.vector.ngram}")
+    private int vectorNgram = 2;
+    @Value("${faq.hnsw.m}")
+    private int hnswM = 16;
+    @Value("${faq.hnsw.ef.construction}")
+    private int hnswEfConstruction = 100;
+    @Value("${faq.hnsw.ef.search}")
+    private int hnswEfSearch = 64;
+    /**
+     * vector store type, float or pq
+     */
+    @Value("${faq.vector.store}")
+    private String vectorStoreType = "float";
+    /**
+     * code bytes per question of pq store
+     */
+    @Value("${faq.pq.subspaces}")
+    private int pqSubspaces = 32;
+    /**
+     * nearest count by pq distance to re-rank with exact vectors, 0 - no re-rank
+     */
+    @Value("${faq.vector.rerank.count}")
+    private int vectorRerankCount = 200;
+
+    /**
+     * near duplicate fast path, fingerprints within distance bits are scored before the full match
+     */
+    @Value("${faq.simhash.enabled}")
+    private boolean simHashEnabled = true;
+    @Value("${faq.simhash.distance}")
+    private int simHashDistance = 6;
+
+    /**
+     * score bound cascade, skip candidates which could not beat the current leader
+     */
+    @Value("${faq.cascade.enabled}")
+    private boolean cascadeEnabled = true;
+
+    /**
+     * max entries of the segment cache
+     */
+    @Value("${faq.segment.cache.size}")
+    private int segmentCacheSize = 20000;
+
+    /**
+     * segment, keyword and word frequency results keyed by mode and normalized text,
+     * replaced on every init so that results of the previous configuration are dropped
+     */
+    private volatile Cache<String, Object> segmentCache = newSegmentCache(20000);
+
     private static final String EXCEL_2007 = "xlsx";
 
+    /**
+     * very high similarity, no need to look further
+     */
+    private static final double HIGH_SIM = 0.95;
+
+    /**
+     * margin of score bounds against float rounding of the exact scores
+     */
+    private static final double CASCADE_EPS = 1e-6;
+
     /**
      * word segment methods
      */
@@ -158,11 +367,71 @@ public class FaqDataService {
     private static final String CHN = "chn";
     private static final String COMBO = "combo";
 
+    /**
+     * candidate retrieval methods
+     */
+    private static final String KEYWORD = "keyword";
+    private static final String BM25 = "bm25";
+    private static final String QGRAM = "qgram";
+    private static final String MINHASH = "minhash";
+    private static final String SYMSPELL = "symspell";
+    private static final String BKTREE = "bktree";
+    private static final String HNSW = "hnsw";
+    private static final String VECTOR = "vector";
+
+    /**
+     * vector store types
+     */
+    private static final String PQ = "pq";
+
+    /**
+     * max sample count to train pq codebooks
+     */
+    private static final int PQ_TRAIN_SIZE = 20000;
+
+    /**
+     * segment cache modes, the key is mode + split + normalized text
+     */
+    private static final String CACHE_KEYWORD = "keyword";
+    private static final String CACHE_WORD_FREQ = "freq";
+    private static final String CACHE_SEGMENT = "segment";
+    private static final char CACHE_KEY_SPLIT = '\u0001';
+
+    /**
+     * segment cache modes of the FaqMatchService similarity tools
+     */
+    static final String CACHE_CHINESE = "chinese";
+    static final String CACHE_HANLP = "hanlp";
+    static final String CACHE_IK = "ik";
+    static final String CACHE_JIEBA = "jieba";
+    static final String CACHE_JIEBA_TFIDF = "jiebaTfidf";
+    static final String CACHE_JIEBA_INDEX = "jiebaIndex";
+
     /**
      * ikea分词模式，1-最小细分，2-智能合并模式
      */
     private int iKeaMode = 1;
 
+    /**
+     * scoring pipeline compiled from the configuration at init
+     */
+    private volatile Scorer scorer;
+
+    /**
+     * tfidf keyword extraction compiled from segmentMethod at init
+     */
+    private volatile Function<String, List<Keyword>> keywordAnalyzer;
+
+    /**
+     * word frequency mode of HuToolUtil.getWordFreqMap compiled from segmentMethod at init
+     */
+    private volatile int wordFreqMode = 1;
+
+    /**
+     * pooled segment engine of segmentMethod for hutool similarity, null if the method has none
+     */
+    private volatile Function<String, String[]> segmenter;
+
     /**
      * init data from provided excel, now only supports 2007 format and the file content must be correct
      * @param dataFile - training set file
@@ -173,6 +442,7 @@ public class FaqDataService {
             log.error("incorrect training data file format!");
             return;
         }
+        clearData();
 
         XSSFWorkbook workBook = (XSSFWorkbook)ExcelUtil.readAsWordBook(dataFile);
         if (workBook.getNumberOfSheets() != SHEET_COUNT) {
@@ -194,10 +464,22 @@ public class FaqDataService {
         } else if (COMBO.equals(segmentMethod)) {
             iKeaMode = 4;
         }
+        // before the indexes, they segment by the compiled modes
+        compileScorer();
 
         // set keyWord Map
         setKeyWordMap();
 
+        // results depend on the configuration compiled above
+        segmentCache = newSegmentCache(segmentCacheSize);
+
+        // flatten related questions and build retrieval index
+        initQuestionList();
+        initExactMap();
+        initRetrievalIndex();
+        initSimHashIndex();
+        initBkTreeIndex();
+
         // init keyMap
         initKeyMap();
 
@@ -208,8 +490,338 @@ public class FaqDataService {
         initSynonymMap();
 
         log.info("InitData done. Now config: segmentMethod-{}, simMethod-{}, tfidfRatio-{}, freqRatio-{}, " +
-                        "jaroRatio-{}, tfidfMode-{}, topN-{}, synonymMode-{}",
-                segmentMethod, simMethod, tfidfRatio, freqRatio, jaroRatio, tfidfMode, topCount, synonymMode);
+                        "jaroRatio-{}, tfidfMode-{}, topN-{}, synonymMode-{}, fullScan-{}, retrievalMethod-{}, " +
+                        "retrievalTopN-{}",
+                segmentMethod, simMethod, tfidfRatio, freqRatio, jaroRatio, tfidfMode, topCount, synonymMode,
+                fullScan, retrievalMethod, retrievalTopCount);
+    }
+
+    private void clearData() {
+        answers.clear();
+        faqMap.clear();
+        wordFreqMap.clear();
+        keyWordMap.clear();
+        combineKeywordMap.clear();
+        synonymMap.clear();
+        keyMap.clear();
+        questionList.clear();
+        questionKeyList.clear();
+        featureList.clear();
+        faqFeatureMap.clear();
+        termDictionary = new TermDictionary();
+        keywordDictionary = new TermDictionary();
+        keywordGraph = ContainmentGraph.build(new String[0]);
+        signatureColumns = FaqFeatures.SignatureColumns.EMPTY;
+        segmentCache.invalidateAll();
+        exactMap.clear();
+        keywordIndex.clear();
+        bm25Index.clear();
+        qGramIndex.clear();
+        minHashIndex = null;
+        simHashIndex = null;
+        symSpellIndex = null;
+        bkTreeIndex = new BkTreeIndex();
+        hnswIndex = null;
+        vectorStore = null;
+    }
+
+    private void initQuestionList() {
+        initKeywordGraph();
+        Function<String, String[]> s = "debatty".equals(simMethod) ? null : segmenter;
+        for (int i = 0; i < faqMap.size(); i++) {
+            FaqFeatures.Keywords combined = tfidfMode == 0 ? null
+                    : FaqFeatures.Keywords.of(combineKeywordMap.get(i), keywordDictionary, keywordGraph);
+            List<FaqFeatures> features = new ArrayList<>();
+            for (String q : faqMap.get(i)) {
+                questionList.add(q);
+                questionKeyList.add(i);
+                List<String> tokens = s == null ? null : Collections.unmodifiableList(Arrays.asList(s.apply(q)));
+                SparseTermVector terms = s == null ? null : SparseTermVector.of(tokens, termDictionary);
+                FaqFeatures.Keywords keywords = combined != null ? combined
+                        : FaqFeatures.Keywords.of(keyWordMap.get(q), keywordDictionary, keywordGraph);
+                FaqFeatures feature = new FaqFeatures(featureList.size(), i, q, tokens, terms, keywords);
+                featureList.add(feature);
+                features.add(feature);
+            }
+            faqFeatureMap.put(i, features);
+        }
+        signatureColumns = FaqFeatures.SignatureColumns.of(featureList);
+        // similarity kernels scratch sized to the longest question
+        SimilarityUtil.reserve(questionList.stream().mapToInt(String::length).max().orElse(0));
+    }
+
+    /**
+     * number all faq keywords and build their containment graph, so that keyword similarity does not
+     * compare keyword names per candidate
+     */
+    private void initKeywordGraph() {
+        Map<?, List<Keyword>> keywords = tfidfMode == 0 ? keyWordMap : combineKeywordMap;
+        keywords.values().forEach(list -> list.forEach(k -> keywordDictionary.add(k.getName())));
+        keywordGraph = ContainmentGraph.build(keywordDictionary.terms());
+        log.info("init keyword graph done, keywords: {}, containment edges: {}", keywordGraph.size(),
+                keywordGraph.edges());
+    }
+
+    private void initExactMap() {
+        for (int id = 0; id < questionList.size(); id++) {
+            String canonical = purge(questionList.get(id));
+            if (StringUtils.isNotEmpty(canonical)) {
+                exactMap.putIfAbsent(canonical, questionKeyList.get(id));
+            }
+        }
+        log.info("init exact map done, size: {}", exactMap.size());
+    }
+
+    /**
+     * exact lookup of a question after removing space and punctuation
+     * @param question - input question
+     * @return index of answers, -1 if not found
+     */
+    int exactMatch(String question) {
+        MetricsUtil.increment(Constants.METRIC_EXACT_LOOKUP);
+        Integer key = exactMap.get(purge(question.toUpperCase()));
+        if (key == null) {
+            return -1;
+        }
+        MetricsUtil.increment(Constants.METRIC_EXACT_HIT);
+        return key;
+    }
+
+    private void initRetrievalIndex() {
+        retrievalMethodList = new ArrayList<>();
+        vectorizer = new NGramVectorizer(vectorDim, vectorNgram);
+        for (String method : retrievalMethod.split(",")) {
+            method = method.trim();
+            if (BM25.equals(method)) {
+                initBm25Index();
+            } else if (QGRAM.equals(method)) {
+                initQGramIndex();
+            } else if (MINHASH.equals(method)) {
+                initMinHashIndex();
+            } else if (SYMSPELL.equals(method)) {
+                initSymSpellIndex();
+            } else if (KEYWORD.equals(method)) {
+                initKeywordIndex();
+            } else if (HNSW.equals(method)) {
+                initHnswIndex();
+            } else if (VECTOR.equals(method)) {
+                initVectorStore();
+            } else if (BKTREE.equals(method)) {
+                log.debug("bk-tree index is always built for nearest lookup");
+            } else {
+                log.error("unknown retrieval method: {}", method);
+                continue;
+            }
+            retrievalMethodList.add(method);
+        }
+    }
+
+    private void initSymSpellIndex() {
+        symSpellIndex = new SymSpellIndex(symSpellDistance, symSpellPrefix);
+        questionList.forEach(symSpellIndex::add);
+        symSpellIndex.build();
+        log.info("init symspell index done, questions: {}, variants: {}", questionList.size(),
+                symSpellIndex.variantCount());
+    }
+
+    private void initHnswIndex() {
+        hnswIndex = new HnswIndex(hnswM, hnswEfConstruction, hnswEfSearch);
+        for (String s : questionList) {
+            hnswIndex.add(vectorizer.vector(s));
+        }
+        log.info("init hnsw index done, questions: {}, dim: {}, m: {}, efConstruction: {}", hnswIndex.size(),
+                vectorDim, hnswM, hnswEfConstruction);
+    }
+
+    private void initVectorStore() {
+        if (PQ.equals(vectorStoreType)) {
+            // evenly spaced sample for codebook training
+            List<float[]> sample = new ArrayList<>();
+            int step = Math.max(1, questionList.size() / PQ_TRAIN_SIZE);
+            for (int id = 0; id < questionList.size(); id += step) {
+                sample.add(vectorizer.vector(questionList.get(id)));
+            }
+            PqVectorStore store = new PqVectorStore(vectorDim, pqSubspaces);
+            store.train(sample);
+            vectorStore = store;
+        } else {
+            vectorStore = new FloatVectorStore(vectorDim);
+        }
+        for (String s : questionList) {
+            vectorStore.add(vectorizer.vector(s));
+        }
+        log.info("init vector store done, type: {}, questions: {}, bytes per question: {}", vectorStoreType,
+                vectorStore.size(), vectorStore.bytesPerEntry());
+    }
+
+    /**
+     * nearest questions by store distance, the top ones optionally re-ranked by exact vectors
+     * recomputed from question text
+     */
+    private List<Integer> searchVectorStore(String question) {
+        float[] query = vectorizer.vector(question);
+        if (vectorRerankCount <= 0 || !PQ.equals(vectorStoreType)) {
+            // float store distances are exact already
+            return vectorStore.search(query, retrievalTopCount);
+        }
+        TopK topK = new TopK(retrievalTopCount);
+        for (Integer id : vectorStore.search(query, Math.max(vectorRerankCount, retrievalTopCount))) {
+            topK.offer(id, NGramVectorizer.dot(query, vectorizer.vector(questionList.get(id))));
+        }
+        return topK.ids();
+    }
+
+    private void initBkTreeIndex() {
+        questionList.forEach(bkTreeIndex::add);
+        log.info("init bk-tree index done, questions: {}, radius: {}", bkTreeIndex.size(), bkTreeRadius);
+    }
+
+    /**
+     * @param radius - requested nearest radius, negative for the configured one
+     * @return true if the radius is not above the configured max radius
+     */
+    public boolean acceptableRadius(int radius) {
+        return radius <= bkTreeMaxRadius;
+    }
+
+    /**
+     * related questions within edit distance radius of the question, for duplicate faq checking
+     * @param question - input question
+     * @param radius - max edit distance, negative to use the configured radius
+     * @return nearest questions with their answers, nearest first
+     */
+    public List<NearestModel> nearest(String question, int radius) {
+        question = question.toUpperCase();
+        if (radius < 0) {
+            radius = bkTreeRadius;
+        }
+        List<NearestModel> result = new ArrayList<>();
+        for (Integer id : bkTreeIndex.search(question, radius)) {
+            String q = questionList.get(id);
+            result.add(new NearestModel(q, answers.get(questionKeyList.get(id)), SimilarityUtil.ld(question, q)));
+        }
+        return result;
+    }
+
+    /**
+     * documents are segmented by the compiled word frequency mode, the same as query term maps
+     */
+    @SuppressWarnings("unchecked")
+    private void initBm25Index() {
+        int mode = wordFreqMode;
+        for (String s : questionList) {
+            bm25Index.add(HuToolUtil.getWordFreqMap(s, mode));
+        }
+        bm25Index.build();
+        log.info("init bm25 index done, questions: {}, terms: {}", questionList.size(), bm25Index.termCount());
+    }
+
+    private void initQGramIndex() {
+        qGramIndex = new QGramIndex(qGramSize);
+        questionList.forEach(qGramIndex::add);
+        log.info("init q-gram index done, questions: {}, grams: {}", questionList.size(), qGramIndex.gramCount());
+    }
+
+    private void initMinHashIndex() {
+        minHashIndex = new MinHashIndex(minHashBands, minHashRows, minHashShingle);
+        questionList.forEach(minHashIndex::add);
+        minHashIndex.build();
+        log.info("init minhash index done, questions: {}, bands: {}, rows: {}", minHashIndex.size(),
+                minHashBands, minHashRows);
+    }
+
+    private void initSimHashIndex() {
+        if (simHashEnabled) {
+            simHashIndex = new SimHashIndex(simHashDistance);
+            questionList.forEach(simHashIndex::add);
+            simHashIndex.build();
+            log.info("init simhash index done, questions: {}, distance: {}", simHashIndex.size(), simHashDistance);
+        }
+    }
+
+    /**
+     * near duplicate fast path, score questions with close fingerprints
+     * @param query - input question features
+     * @return faq key and similarity if a near duplicate reaches very high similarity, else null
+     */
+    Pair<Integer, Double> nearDuplicateMatch(QueryFeatures query) {
+        if (simHashIndex == null) {
+            return null;
+        }
+        for (Integer id : simHashIndex.search(query.text())) {
+            int key = questionKeyList.get(id);
+            ScoreModel simResult = similarityCalc(query, featureList.get(id), HIGH_SIM);
+            if (simResult != null && simResult.getScore() >= HIGH_SIM) {
+                log.debug("near duplicate matched, q: {}, faq: {}, sim-tf: {}", query.text(), questionList.get(id),
+                        simResult);
+                return new Pair<>(key, simResult.getScore());
+            }
+        }
+        return null;
+    }
+
+    private void initKeywordIndex() {
+        for (int id = 0; id < questionList.size(); id++) {
+            List<Keyword> keywords;
+            if (tfidfMode == 0) {
+                keywords = keyWordMap.get(questionList.get(id));
+            } else {
+                keywords = combineKeywordMap.get(questionKeyList.get(id));
+            }
+            if (keywords != null) {
+                keywordIndex.add(id, keywords);
+            }
+        }
+        log.info("init keyword index done, questions: {}, keywords: {}", questionList.size(), keywordIndex.termCount());
+    }
+
+    /**
+     * retrieve candidate related questions for a question
+     * @param query - input question features
+     * @return key - faq key, value - features of related questions to score; null means full scan
+     */
+    Map<Integer, List<FaqFeatures>> retrieveCandidates(QueryFeatures query) {
+        if (fullScan) {
+            return null;
+        }
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (String method : retrievalMethodList) {
+            ids.addAll(searchIndex(method, query));
+        }
+        if (ids.isEmpty()) {
+            // nothing retrieved, fall back to full scan
+            log.debug("no candidate retrieved, fall back to full scan");
+            return null;
+        }
+
+        Map<Integer, List<FaqFeatures>> candidates = new HashMap<>(ids.size());
+        for (Integer id : ids) {
+            candidates.computeIfAbsent(questionKeyList.get(id), k -> new ArrayList<>()).add(featureList.get(id));
+        }
+        log.debug("candidates retrieved, questions: {}, faqs: {}", ids.size(), candidates.size());
+        return candidates;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Integer> searchIndex(String method, QueryFeatures query) {
+        String question = query.text();
+        if (BM25.equals(method)) {
+            return bm25Index.search(query.wordFreq().keySet(), retrievalTopCount);
+        } else if (QGRAM.equals(method)) {
+            return qGramIndex.search(question, qGramMinSim, retrievalTopCount);
+        } else if (MINHASH.equals(method)) {
+            return minHashIndex.search(question, retrievalTopCount);
+        } else if (SYMSPELL.equals(method)) {
+            return symSpellIndex.search(question);
+        } else if (VECTOR.equals(method)) {
+            return searchVectorStore(question);
+        } else if (HNSW.equals(method)) {
+            return hnswIndex.search(vectorizer.vector(question), retrievalTopCount);
+        } else if (BKTREE.equals(method)) {
+            return bkTreeIndex.search(question, bkTreeRadius);
+        } else {
+            return keywordIndex.search(query.keywordList(), retrievalTopCount);
+        }
     }
 
     private void initSynonymMap() {
@@ -267,13 +879,7 @@ public class FaqDataService {
             List<String> material = faqMap.get(i);
             Map<String, Integer> finalMap = new HashMap<>(16);
             for (String s : material) {
-                Map<String, Integer> wordMap;
-                if (segmentMethod.equals(IKEA) || segmentMethod.equals(COMBO)) {
-                    wordMap = HuToolUtil.getWordFreqMap(s, 0);
-                } else {
-                    wordMap = HuToolUtil.getWordFreqMap(s, 1);
-                }
-
+                Map<String, Integer> wordMap = HuToolUtil.getWordFreqMap(s, wordFreqMode);
                 finalMap = HuToolUtil.mergeMap(wordMap, finalMap);
             }
             finalMap = HuToolUtil.sortMapByValue(finalMap, 0);
@@ -299,15 +905,7 @@ public class FaqDataService {
         if (tfidfMode == 0) {
             // single sentence mode
             faqMap.forEach((k, v) ->
-                    v.forEach(s -> {
-                        List<Keyword> faqKeyWords;
-                        if (segmentMethod.equals(IKEA) || segmentMethod.equals(IKEA2) || segmentMethod.equals(COMBO)) {
-                            faqKeyWords = tfidfAnalyzer.analyzeEx(s, topCount, iKeaMode);
-                        } else {
-                            faqKeyWords = tfidfAnalyzer.analyze(s, topCount);
-                        }
-                        keyWordMap.put(s, faqKeyWords);
-                    })
+                    v.forEach(s -> keyWordMap.put(s, keywordAnalyzer.apply(s)))
             );
         } else if (tfidfMode == 1) {
             // combine sentence mode
@@ -316,13 +914,7 @@ public class FaqDataService {
                 for (String s : v) {
                     combineStr = combineStr.concat("|").concat(s);
                 }
-                List<Keyword> combineKeyWords;
-                if (segmentMethod.equals(IKEA) || segmentMethod.equals(IKEA2) || segmentMethod.equals(COMBO)) {
-                    combineKeyWords = tfidfAnalyzer.analyzeEx(combineStr, topCount, iKeaMode);
-                } else {
-                    combineKeyWords = tfidfAnalyzer.analyze(combineStr, topCount);
-                }
-                combineKeywordMap.put(k, combineKeyWords);
+                combineKeywordMap.put(k, keywordAnalyzer.apply(combineStr));
             });
         }
     }
@@ -430,92 +1022,206 @@ public class FaqDataService {
     }
 
     List<Keyword> getKeywords(String text) {
-        List<Keyword> keys;
-        if (segmentMethod.equals(IKEA) || segmentMethod.equals(IKEA2) || segmentMethod.equals(COMBO)) {
-            keys = tfidfAnalyzer.analyzeEx(text, topCount, iKeaMode);
-        } else {
-            keys = tfidfAnalyzer.analyze(text, topCount);
+        Function<String, List<Keyword>> analyzer = keywordAnalyzer;
+        return cached(CACHE_KEYWORD, text, t -> Collections.unmodifiableList(analyzer.apply(t)));
+    }
+
+    /**
+     * features of an input question, computed once and shared by all steps and partitions of a match
+     * @param question - input question
+     * @return question features
+     */
+    QueryFeatures queryFeatures(String question) {
+        List<Keyword> qKeyWord = getKeywords(question);
+        String text = question.toUpperCase();
+        List<String> tokens = queryTokens(text);
+        // signature bounds against every related question in one kernel call, only the cascade reads them
+        FaqFeatures.SignatureColumns columns = "debatty".equals(simMethod) && cascadeEnabled
+                ? signatureColumns : null;
+        return new QueryFeatures(text, tokens, queryTermVector(tokens), qKeyWord,
+                FaqFeatures.Keywords.lookup(qKeyWord, keywordDictionary), wordFreq(text), columns);
+    }
+
+    /**
+     * word frequency of a question by the compiled word frequency mode, cached
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Integer> wordFreq(String text) {
+        int mode = wordFreqMode;
+        return cached(CACHE_WORD_FREQ + mode, text,
+                t -> Collections.unmodifiableMap(HuToolUtil.getWordFreqMap(t, mode)));
+    }
+
+    /**
+     * result of a text from the segment cache, computed and cached on a miss
+     * @param mode - segmenter or analyzer mode, results of different modes are kept apart
+     * @param text - input text, normalized before lookup and computation
+     * @param loader - computes the result of the normalized text, the result must not be modified afterwards
+     * @return cached or computed result
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T cached(String mode, String text, Function<String, T> loader) {
+        String normalized = text.trim();
+        String key = mode + CACHE_KEY_SPLIT + normalized;
+        Cache<String, Object> cache = segmentCache;
+        MetricsUtil.increment(Constants.METRIC_SEGMENT_CACHE_LOOKUP);
+        Object value = cache.getIfPresent(key);
+        if (value != null) {
+            MetricsUtil.increment(Constants.METRIC_SEGMENT_CACHE_HIT);
+            return (T) value;
+        }
+        MetricsUtil.increment(Constants.METRIC_SEGMENT_CACHE_MISS);
+        T result = loader.apply(normalized);
+        if (result != null) {
+            cache.put(key, result);
         }
-        return keys;
+        return result;
+    }
+
+    private static Cache<String, Object> newSegmentCache(int size) {
+        return CacheBuilder.newBuilder()
+                .maximumSize(size)
+                .removalListener((RemovalListener<String, Object>) notification -> {
+                    if (notification.wasEvicted()) {
+                        MetricsUtil.increment(Constants.METRIC_SEGMENT_CACHE_EVICT);
+                    }
+                })
+                .build();
     }
 
     /**
      * method to calculate sentence similarity for faqs
-     * @param question - input question
+     * @param query - input question features, shared by all partitions
+     * @param candidates - retrieved candidates, null to scan all related questions
      * @param hash - thread hash
      * @param counter - CountDownLatch
      * @param map - result map
      */
-    void calcSimilarity(String question, List<Keyword> qKeyWord, int hash,
+    void calcSimilarity(QueryFeatures query, Map<Integer, List<FaqFeatures>> candidates, int hash,
                         CountDownLatch counter, ConcurrentHashMap<Integer, Double> map) {
-        question = question.toUpperCase();
         log.debug("calcSimilarity running on thread: {}, question: {}, hash: {}, result count: {}",
-                Thread.currentThread().getName(), question, hash, map.size());
+                Thread.currentThread().getName(), query.text(), hash, map.size());
 
         double finalSim = 0;
         int finalKey = -1;
-        String finalSimInfo = "";
+        ScoreModel finalScore = null;
         String matchFaq = "";
         int finalFreqCount = 0;
         HashSet<Integer> keys = keyMap.get(hash);
         for (Integer i : keys) {
-            List<String> faqs = faqMap.get(i);
+            List<FaqFeatures> faqs = candidates == null ? faqFeatureMap.get(i) : candidates.get(i);
+            if (faqs == null) {
+                // not retrieved
+                continue;
+            }
             double sectionHighSim = 0;
             String sectionResultFaq = "";
-            String sectionSimInfo = "";
-            for (String s : faqs) {
-                Pair<String, Double> simResult = similarityCalc(i, question, qKeyWord, s);
-                if (simResult.getValue() > sectionHighSim) {
-                    sectionHighSim = simResult.getValue();
-                    sectionResultFaq = s;
-                    sectionSimInfo = simResult.getKey();
+            ScoreModel sectionScore = null;
+            // frequency map
+            int freqCount = handleWordFreq(i, query.wordFreq());
+            double adjustRatio = (double)(freqCount % 20) / 20;
+            // lowest similarity of this faq which could still beat the partition leader after adjustment
+            double leaderFloor = unadjustedFloor(finalSim, adjustRatio * freqRatio);
+            for (FaqFeatures faq : faqs) {
+                ScoreModel simResult = similarityCalc(query, faq, Math.max(sectionHighSim, leaderFloor));
+                if (simResult == null) {
+                    // can not beat the section or partition leader
+                    continue;
+                }
+                if (simResult.getScore() > sectionHighSim) {
+                    sectionHighSim = simResult.getScore();
+                    sectionResultFaq = faq.text();
+                    sectionScore = simResult;
                 }
-                if (sectionHighSim > 0.95) {
+                if (sectionHighSim > HIGH_SIM) {
                     // very high similarity, directly end this loop
                     break;
                 }
             }
-            // frequency map
-            int freqCount = handleWordFreq(i, question);
-            if(sectionHighSim >= 0.95) {
+            if(sectionHighSim >= HIGH_SIM) {
                 // very high similarity, break directly
                 finalSim = sectionHighSim;
                 finalKey = i;
                 matchFaq = sectionResultFaq;
-                finalSimInfo = sectionSimInfo;
+                finalScore = sectionScore;
                 finalFreqCount = freqCount;
                 break;
             }
 
-            double adjustRatio = (double)(freqCount % 20) / 20;
             sectionHighSim += (1-sectionHighSim) * adjustRatio * freqRatio * sectionHighSim;
             if (sectionHighSim > finalSim) {
                 finalSim = sectionHighSim;
                 finalKey = i;
                 matchFaq = sectionResultFaq;
-                finalSimInfo = sectionSimInfo;
+                finalScore = sectionScore;
                 finalFreqCount = freqCount;
             }
         }
 
-        counter.countDown();
+        // publish result before count down, ranking starts once the latch is released
         map.put(finalKey, finalSim);
+        counter.countDown();
         log.debug("calcSimilarity done on thread: {}, similarity: {}, sim-tf: {}, freqCount: {}," +
                         " matched key&q: {} - {}, now result count: {}",
-                Thread.currentThread().getName(), DF.format(finalSim), finalSimInfo, finalFreqCount,
+                Thread.currentThread().getName(), finalSim, finalScore, finalFreqCount,
                 finalKey, matchFaq, map.size());
     }
 
+    /**
+     * score breakdown of the highest scored related questions, every candidate is scored without pruning
+     * @param question - input question
+     * @param topK - count of explanations, at most the count of related questions
+     * @return explanations ordered from highest to lowest adjusted score
+     */
+    public List<ScoreModel> explain(String question, int topK) {
+        QueryFeatures query = queryFeatures(question);
+        Map<Integer, List<FaqFeatures>> candidates = retrieveCandidates(query);
+        // explanations are per related question, more could never be returned
+        int k = Math.max(1, Math.min(topK, questionList.size()));
+        // min heap of the k highest adjusted scores, holding the explanations themselves
+        Comparator<ScoreModel> byAdjusted = Comparator.comparingDouble(ScoreModel::getAdjustedScore);
+        PriorityQueue<ScoreModel> top = new PriorityQueue<>(Math.min(k, 16) + 1, byAdjusted);
+        for (int i = 0; i < answers.size(); i++) {
+            List<FaqFeatures> faqs = candidates == null ? faqFeatureMap.get(i) : candidates.get(i);
+            if (faqs == null) {
+                continue;
+            }
+            int freqCount = handleWordFreq(i, query.wordFreq());
+            double adjust = (double)(freqCount % 20) / 20 * freqRatio;
+            for (FaqFeatures faq : faqs) {
+                ScoreModel score = similarityCalc(query, faq, -1);
+                if (score == null) {
+                    continue;
+                }
+                // same frequency adjustment as calcSimilarity
+                double sim = score.getScore();
+                score.setKey(i);
+                score.setQuestion(faq.text());
+                score.setFreqCount(freqCount);
+                score.setAdjustedScore(sim >= HIGH_SIM ? sim : sim + (1 - sim) * adjust * sim);
+                if (top.size() < k) {
+                    top.add(score);
+                } else if (score.getAdjustedScore() > top.peek().getAdjustedScore()) {
+                    top.poll();
+                    top.add(score);
+                }
+            }
+        }
+
+        List<ScoreModel> result = new ArrayList<>(top);
+        result.sort(byAdjusted.reversed());
+        return result;
+    }
+
+    /**
+     * @param key - faq key
+     * @param questionFreq - word frequency of the question, computed once per match
+     * @return total question frequency of words shared with the faq
+     */
     @SuppressWarnings("unchecked")
-    private int handleWordFreq(int key, String question) {
+    private int handleWordFreq(int key, Map<String, Integer> questionFreq) {
         Map<String, Integer> freqMap = wordFreqMap.get(key);
-        Map<String, Integer> questionMap;
-        if (segmentMethod.equals(IKEA) || segmentMethod.equals(COMBO)) {
-            questionMap = HuToolUtil.getWordFreqMap(question, 0);
-        } else {
-            questionMap = HuToolUtil.getWordFreqMap(question, 1);
-        }
-        questionMap = HuToolUtil.getIntersectionSetByGuava(freqMap, questionMap);
+        Map<String, Integer> questionMap = HuToolUtil.getIntersectionSetByGuava(freqMap, questionFreq);
         int total = 0;
         for (Entry<String, Integer> e : questionMap.entrySet()) {
             total += e.getValue();
@@ -524,23 +1230,353 @@ public class FaqDataService {
         return total;
     }
 
-    private Pair<String, Double> similarityCalc(int key, String question, List<Keyword> qKeyWord, String faq) {
-        double sim;
+    /**
+     * lowest raw similarity s whose frequency adjusted value s + c * s * (1 - s) exceeds the leader
+     * @param leader - adjusted similarity to beat
+     * @param c - adjust coefficient
+     * @return similarity floor, 0 if the adjustment is not monotone
+     */
+    private static double unadjustedFloor(double leader, double c) {
+        if (c <= 0) {
+            return leader;
+        }
+        if (c > 1) {
+            return 0;
+        }
+        // smaller root of c * s^2 - (1 + c) * s + leader = 0
+        return ((1 + c) - Math.sqrt((1 + c) * (1 + c) - 4 * c * leader)) / (2 * c);
+    }
+
+    /**
+     * similarity of question and a related question, by the compiled scorer pipeline
+     * @param minScore - the result is only needed if it is greater than this
+     * @return score with its components, null if the score could not be greater than minScore
+     */
+    private ScoreModel similarityCalc(QueryFeatures query, FaqFeatures faq, double minScore) {
+        return scorer.score(query, faq, minScore);
+    }
 
-        List<Keyword> faqKeyWords;
-        // get keywords by tfidf mode
-        if (tfidfMode == 0) {
-            faqKeyWords = keyWordMap.get(faq);
+    /**
+     * compile the scoring configuration into an immutable scorer pipeline, so that the per candidate path
+     * has no branch on segmentMethod, simMethod, algorithm, tfidfMode, synonymMode or cascadeEnabled
+     */
+    private void compileScorer() {
+        boolean ikea = IKEA.equals(segmentMethod) || IKEA2.equals(segmentMethod) || COMBO.equals(segmentMethod);
+        keywordAnalyzer = ikea ? new IkeaKeywordAnalyzer(iKeaMode, topCount) : new KeywordAnalyzer(topCount);
+        wordFreqMode = (IKEA.equals(segmentMethod) || COMBO.equals(segmentMethod)) ? 0 : 1;
+        if (IKEA.equals(segmentMethod) || IKEA2.equals(segmentMethod)) {
+            segmenter = text -> SegmentUtil.ik(text, false);
+        } else if (HANLP.equals(segmentMethod)) {
+            segmenter = SegmentUtil::hanLP;
+        } else if (JIEBA.equals(segmentMethod)) {
+            segmenter = SegmentUtil::jieba;
+        } else if (CHN.equals(segmentMethod)) {
+            segmenter = SegmentUtil::chinese;
         } else {
-            faqKeyWords = combineKeywordMap.get(key);
+            segmenter = null;
+        }
+
+        SimMeasure measure = "debatty".equals(simMethod)
+                ? new DebattyMeasure(jaroRatio, edRatio, jacRatio, cascadeEnabled ? HIGH_SIM - CASCADE_EPS : -1)
+                : new HutoolMeasure();
+        Scorer compiled;
+        if (algorithm == 0) {
+            compiled = new SimScorer(measure);
+        } else if (algorithm == 1) {
+            compiled = new TfidfScorer();
+        } else {
+            compiled = new TfidfDynamicScorer(measure, excludeThreshold);
         }
         if (synonymMode == 1) {
+            compiled = new SynonymScorer(compiled);
+        }
+        scorer = compiled;
+        log.debug("scorer compiled: {}", compiled);
+    }
+
+    /**
+     * cascade switch, recompiles the scorer pipeline
+     */
+    public void setCascadeEnabled(boolean cascadeEnabled) {
+        this.cascadeEnabled = cascadeEnabled;
+        compileScorer();
+    }
+
+    /**
+     * one step of the scorer pipeline
+     */
+    private interface Scorer {
+        /**
+         * @param minScore - the result is only needed if it is greater than this
+         * @return score with its components, null if the score could not be greater than minScore
+         */
+        ScoreModel score(QueryFeatures query, FaqFeatures faq, double minScore);
+    }
+
+    /**
+     * sentence similarity part of the score
+     */
+    private interface SimMeasure {
+        /**
+         * @param floor - the similarity is only needed if it is greater than this
+         * @return similarity, -1 if it could not be greater than floor
+         */
+        double sim(QueryFeatures query, FaqFeatures faq, double floor);
+
+        /**
+         * @return floor passed to sim for a result needed above minScore
+         */
+        double floor(double minScore);
+    }
+
+    /**
+     * tfidf keyword extraction of ikea segment methods
+     */
+    private final class IkeaKeywordAnalyzer implements Function<String, List<Keyword>> {
+        private final int mode;
+        private final int top;
+
+        private IkeaKeywordAnalyzer(int mode, int top) {
+            this.mode = mode;
+            this.top = top;
+        }
+
+        @Override
+        public List<Keyword> apply(String text) {
+            return tfidfAnalyzer.analyzeEx(text, top, mode);
+        }
+    }
+
+    /**
+     * tfidf keyword extraction of the other segment methods
+     */
+    private final class KeywordAnalyzer implements Function<String, List<Keyword>> {
+        private final int top;
+
+        private KeywordAnalyzer(int top) {
+            this.top = top;
+        }
+
+        @Override
+        public List<Keyword> apply(String text) {
+            return tfidfAnalyzer.analyze(text, top);
+        }
+    }
+
+    /**
+     * debatty blend (jaroRatio * jaro + edRatio * ed + jacRatio * jac) / 10 as a cascade, every stage replaces
+     * an upper bound by the exact value from cheapest to most expensive, and stops once the blend bound
+     * could not exceed the floor
+     */
+    private final class DebattyMeasure implements SimMeasure {
+        private final int jaro;
+        private final int ed;
+        private final int jac;
+
+        /**
+         * highest floor, HIGH_SIM - CASCADE_EPS with cascade so that a very high score is always computed,
+         * -1 without cascade so that nothing is pruned
+         */
+        private final double maxFloor;
+
+        private DebattyMeasure(int jaro, int ed, int jac, double maxFloor) {
+            this.jaro = jaro;
+            this.ed = ed;
+            this.jac = jac;
+            this.maxFloor = maxFloor;
+        }
+
+        @Override
+        public double floor(double minScore) {
+            return Math.min(minScore, maxFloor);
+        }
+
+        @Override
+        public double sim(QueryFeatures query, FaqFeatures features, double floor) {
+            MetricsUtil.increment(Constants.METRIC_CASCADE_CANDIDATE);
+            String question = query.text();
+            CharSignature qSignature = query.signature();
+            String faq = features.text();
+            CharSignature faqSignature = features.signature();
+
+            // lengths and character signatures
+            int minLen = Math.min(question.length(), faq.length());
+            int maxLen = Math.max(question.length(), faq.length());
+            double jaroBound = SimilarityUtil.jaroUpperBound(question.length(), faq.length());
+            double edBound = 1 - (double) (maxLen - minLen) / maxLen;
+            int[] bounds = query.signatureBounds();
+            double jacBound = bounds != null
+                    ? qSignature.jaccardUpperBound(bounds[features.id()], faqSignature.size())
+                    : qSignature.jaccardUpperBound(faqSignature);
+            if (blend(jaroBound, edBound, jacBound) + CASCADE_EPS <= floor) {
+                MetricsUtil.increment(Constants.METRIC_CASCADE_PRUNED_LENGTH);
+                return -1;
+            }
+
+            // exact jaccard by merge
+            double jacSim = qSignature.jaccard(faqSignature);
+            if (blend(jaroBound, edBound, jacSim) + CASCADE_EPS <= floor) {
+                MetricsUtil.increment(Constants.METRIC_CASCADE_PRUNED_JACCARD);
+                return -1;
+            }
+
+            // edit similarity, bounded by the lowest value that could still pass
+            double edSim;
+            if (ed > 0) {
+                double edFloor = (floor * 10 - jaro * jaroBound - jac * jacSim) / ed - CASCADE_EPS;
+                edSim = SimilarityUtil.sim(question, faq, edFloor);
+                if (blend(jaroBound, edSim, jacSim) + CASCADE_EPS <= floor) {
+                    MetricsUtil.increment(Constants.METRIC_CASCADE_PRUNED_EDIT);
+                    return -1;
+                }
+            } else {
+                edSim = SimilarityUtil.sim(question, faq);
+            }
+
+            // jaro winkler, the most expensive
+            double jaroSim = SimilarityUtil.jaroSimilarity(question, faq);
+            MetricsUtil.increment(Constants.METRIC_CASCADE_SCORED);
+            return blend(jaroSim, edSim, jacSim);
+        }
+
+        private double blend(double jaroSim, double edSim, double jacSim) {
+            return (jaro * jaroSim + ed * edSim + jac * jacSim) / 10;
+        }
+
+        @Override
+        public String toString() {
+            return "debatty(" + jaro + "," + ed + "," + jac + (maxFloor < 0 ? ")" : ", cascade)");
+        }
+    }
+
+    /**
+     * hutool cosine of segmented terms, faq vectors are segmented once at init
+     */
+    private final class HutoolMeasure implements SimMeasure {
+        @Override
+        public double floor(double minScore) {
+            return minScore;
+        }
+
+        @Override
+        public double sim(QueryFeatures query, FaqFeatures faq, double floor) {
+            return HuToolUtil.getSimilarity(query.terms(), faq.terms());
+        }
+
+        @Override
+        public String toString() {
+            return "hutool";
+        }
+    }
+
+    /**
+     * algorithm 0, similarity only
+     */
+    private final class SimScorer implements Scorer {
+        private final SimMeasure measure;
+
+        private SimScorer(SimMeasure measure) {
+            this.measure = measure;
+        }
+
+        @Override
+        public ScoreModel score(QueryFeatures query, FaqFeatures faq, double minScore) {
+            double sim = measure.sim(query, faq, measure.floor(minScore));
+            if (sim < 0) {
+                return null;
+            }
+            return new ScoreModel(sim, 10, 0, 0, -1, sim);
+        }
+
+        @Override
+        public String toString() {
+            return "sim[" + measure + "]";
+        }
+    }
+
+    /**
+     * algorithm 1, tfidf similarity only
+     */
+    private final class TfidfScorer implements Scorer {
+        @Override
+        public ScoreModel score(QueryFeatures query, FaqFeatures faq, double minScore) {
+            FaqFeatures.Keywords faqKeywords = faq.keywords();
+            double tfidfSim = normalizedKeywordSim(faqKeywords, query.keywords());
+            int hitCount = faqKeywords.hits(query.keywords());
+            return new ScoreModel(tfidfSim, 0, tfidfSim, 10, hitCount, tfidfSim);
+        }
+
+        @Override
+        public String toString() {
+            return "tfidf";
+        }
+    }
+
+    /**
+     * algorithm 2, similarity and tfidf blended by a ratio from lengths and keyword hits
+     */
+    private final class TfidfDynamicScorer implements Scorer {
+        private final SimMeasure measure;
+        private final double exclude;
+
+        private TfidfDynamicScorer(SimMeasure measure, double exclude) {
+            this.measure = measure;
+            this.exclude = exclude;
+        }
+
+        @Override
+        public ScoreModel score(QueryFeatures query, FaqFeatures faq, double minScore) {
+            // tfidf part first, it decides how much the similarity part could contribute
+            FaqFeatures.Keywords faqKeywords = faq.keywords();
+            double tfidfSim = normalizedKeywordSim(faqKeywords, query.keywords());
+            int hitCount = faqKeywords.hits(query.keywords());
+            // dynamic ratio
+            int minLen = Math.min(faq.length(), query.length());
+            int tfRatio = Math.min(9, 1 + (minLen - 1) / 4 + hitCount * 2);
+            int simRatio = 10 - tfRatio;
+
+            double floor = measure.floor(minScore);
+            double simFloor = Math.min(floor, (floor * 10 - tfidfSim * tfRatio) / simRatio);
+            double sim = measure.sim(query, faq, simFloor);
+            if (sim < 0) {
+                return null;
+            }
+
+            // final sim, if sim very high, use it directly, do not do ratio calculation
+            double score = sim;
+            boolean flag = sim > exclude && tfidfSim > 0.1;
+            if (!flag) {
+                score = (sim * simRatio + tfidfSim * tfRatio) / 10;
+            } else {
+                log.debug("reach exclude threshold, sim: {}, tfidfSim: {}", sim, tfidfSim);
+            }
+            return new ScoreModel(sim, simRatio, tfidfSim, tfRatio, hitCount, score);
+        }
+
+        @Override
+        public String toString() {
+            return "tfidfDynamic[" + measure + "]";
+        }
+    }
+
+    /**
+     * synonym mode, replace one question keyword by a faq keyword it is a synonym of, then score
+     */
+    private final class SynonymScorer implements Scorer {
+        private final Scorer next;
+
+        private SynonymScorer(Scorer next) {
+            this.next = next;
+        }
+
+        @Override
+        public ScoreModel score(QueryFeatures query, FaqFeatures faq, double minScore) {
             // check if question could be adjusted
-            String oldQuestion = question;
+            String question = query.text();
             boolean bReplaced = false;
-            for (Keyword keyword : qKeyWord) {
-                if (!faq.contains(keyword.getName())) {
-                    for (Keyword faqKeyword : faqKeyWords) {
+            for (Keyword keyword : query.keywordList()) {
+                if (!faq.text().contains(keyword.getName())) {
+                    for (Keyword faqKeyword : faq.keywords().list()) {
                         List<String> faqKeywordSynonym = synonymMap.get(faqKeyword.getName());
                         if (faqKeywordSynonym.contains(keyword.getName())) {
                             // replace question
@@ -556,79 +1592,48 @@ public class FaqDataService {
                 }
             }
             if (bReplaced) {
+                List<String> tokens = queryTokens(question);
                 log.info("q replaced on thread: {}, old q: {}, new q: {}", Thread.currentThread().getName(),
-                        oldQuestion, question);
+                        query.text(), question);
+                query = query.replace(question, tokens, queryTermVector(tokens));
             }
-
+            return next.score(query, faq, minScore);
         }
 
-        if ("debatty".equals(simMethod)) {
-            // use previous method
-            double sim1 = SimilarityUtil.jaroSimilarity(question, faq);
-            double sim2 = SimilarityUtil.sim(question, faq);
-            double sim3 = SimilarityUtil.jacCardSimilarity(question, faq);
-            sim = (jaroRatio * sim1 + edRatio * sim2 + jacRatio * sim3) / 10;
-        } else {
-            // use hutool method
-            Vector<String> v1 = null;
-            Vector<String> v2 = null;
-            if (IKEA.equals(segmentMethod) || IKEA2.equals(segmentMethod)) {
-                v1 = HuToolUtil.participleIk(question);
-                v2 = HuToolUtil.participleIk(faq);
-            } else if (HANLP.equals(segmentMethod)) {
-                v1 = HuToolUtil.participleHanLP(question);
-                v2 = HuToolUtil.participleHanLP(faq);
-            } else if (JIEBA.equals(segmentMethod)) {
-                v1 = HuToolUtil.participleJieBa(question);
-                v2 = HuToolUtil.participleJieBa(faq);
-            } else if (CHN.equals(segmentMethod)) {
-                v1 = HuToolUtil.participleChinese(question);
-                v2 = HuToolUtil.participleChinese(faq);
-            }
-            sim = HuToolUtil.getSimilarity(v1, v2);
-        }
-
-        String simInfo;
-        // algorithm != 0, need to use tfidf
-        if (algorithm != 0) {
-            // calculate tfidf
-            double tfidfSim = normalizedKeywordSim(faqKeyWords, qKeyWord);
-            List<String> qKeys = qKeyWord.parallelStream().map(Keyword::getName).collect(toList());
-            List<String> faqKeys = faqKeyWords.parallelStream().map(Keyword::getName).collect(toList());
-            long hitCount = faqKeys.parallelStream().filter(item -> qKeys.contains(item)).count();
-
-            if (algorithm == 2) {
-                // dynamic ratio
-                int qLen = question.length();
-                int minLen = faq.length() < qLen ? faq.length() : qLen;
-                int tfRatio = 1 + (minLen - 1) / 4;
-                tfRatio += hitCount * 2;
-                if (tfRatio > 9) {
-                    tfRatio = 9;
-                }
+        @Override
+        public String toString() {
+            return "synonym>" + next;
+        }
+    }
 
-                int simRatio = 10 - tfRatio;
-                simInfo = DF.format(sim) + " * " + simRatio + " & " + DF.format(tfidfSim) + " * " + tfRatio
-                        + ", count: " + hitCount;
-                // final sim, if sim very high, use it directly, do not do ratio calculation
-                boolean flag = sim > excludeThreshold && tfidfSim > 0.1;
-                if (!flag) {
-                    sim = (sim * simRatio + tfidfSim * tfRatio) / 10;
-                } else {
-                    log.debug("reach exclude threshold, sim: {}, tfidfSim: {}", sim, tfidfSim);
-                }
+    /**
+     * segment a text by the configured segment method
+     * @param text - input text
+     * @return segments, null if the method has no segmenter
+     */
+    private List<String> participle(String text) {
+        Function<String, String[]> s = segmenter;
+        return s == null ? null : Arrays.asList(cached(CACHE_SEGMENT, text, s));
+    }
 
-            } else {
-                // only use tfidf similarity
-                sim = tfidfSim;
-                simInfo = DF.format(sim) + " * 0 & " + DF.format(tfidfSim) + " * 10, count: " + hitCount;
-            }
-        } else {
-            // else, just use sim value
-            simInfo = DF.format(sim) + " * 10 & 0 * 0";
+    /**
+     * @return question segments for hutool similarity, null for debatty which does not need them
+     */
+    private List<String> queryTokens(String question) {
+        if ("debatty".equals(simMethod)) {
+            return null;
         }
+        return participle(question);
+    }
 
-        return new Pair<>(simInfo, sim);
+    /**
+     * @return question term vector for hutool similarity, null for debatty which does not need it
+     */
+    private SparseTermVector queryTermVector(List<String> tokens) {
+        if ("debatty".equals(simMethod)) {
+            return null;
+        }
+        return SparseTermVector.lookup(tokens, termDictionary);
     }
 
     /**
@@ -640,8 +1645,9 @@ public class FaqDataService {
     double faqTfidfSim(String faq, String q) {
         faq = faq.toUpperCase();
         q = q.toUpperCase();
-        List<Keyword> faqKeys = getKeywords(faq);
-        List<Keyword> qKeys = getKeywords(q);
+        TermDictionary dictionary = new TermDictionary();
+        FaqFeatures.Keywords faqKeys = FaqFeatures.Keywords.of(getKeywords(faq), dictionary);
+        FaqFeatures.Keywords qKeys = FaqFeatures.Keywords.of(getKeywords(q), dictionary);
         return simplexKeywordSim(faqKeys, qKeys);
     }
 
@@ -654,8 +1660,9 @@ public class FaqDataService {
     double tfidfSim(String s1, String s2) {
         s1 = s1.toUpperCase();
         s2 = s2.toUpperCase();
-        List<Keyword> keys1 = getKeywords(s1);
-        List<Keyword> keys2 = getKeywords(s2);
+        TermDictionary dictionary = new TermDictionary();
+        FaqFeatures.Keywords keys1 = FaqFeatures.Keywords.of(getKeywords(s1), dictionary);
+        FaqFeatures.Keywords keys2 = FaqFeatures.Keywords.of(getKeywords(s2), dictionary);
         return duplexKeywordSim(keys1, keys2);
     }
 
@@ -668,31 +1675,34 @@ public class FaqDataService {
     public double normalizedTfidfSim(String s1, String s2) {
         s1 = s1.toUpperCase();
         s2 = s2.toUpperCase();
-        List<Keyword> keys1 = getKeywords(s1);
-        List<Keyword> keys2 = getKeywords(s2);
+        TermDictionary dictionary = new TermDictionary();
+        FaqFeatures.Keywords keys1 = FaqFeatures.Keywords.of(getKeywords(s1), dictionary);
+        FaqFeatures.Keywords keys2 = FaqFeatures.Keywords.of(getKeywords(s2), dictionary);
         return normalizedKeywordSim(keys1, keys2);
     }
 
     /**
-     * simplex keyword similarity
+     * simplex keyword similarity, by linear merge of sorted keyword ids
      * @param faq - target faq
      * @param q - question
      * @return similarity result
      */
-    private double simplexKeywordSim(List<Keyword> faq, List<Keyword> q) {
-        List<String> faqName = new ArrayList<>();
+    private double simplexKeywordSim(FaqFeatures.Keywords faq, FaqFeatures.Keywords q) {
         double faqTotalTfidf = 0;
-        for (Keyword key : faq) {
-            faqTotalTfidf += key.getTfidfvalue();
-            faqName.add(key.getName());
+        for (int i = 0; i < faq.size(); i++) {
+            faqTotalTfidf += faq.weight(i);
         }
 
         double result = 0;
-        for (Keyword key : q) {
-            if (faqName.contains(key.getName())) {
-                result += key.getTfidfvalue();
+        int i = 0;
+        for (int j = 0; j < q.size(); j++) {
+            while (i < faq.size() && faq.id(i) < q.id(j)) {
+                i++;
+            }
+            if (i < faq.size() && faq.id(i) == q.id(j)) {
+                result += q.weight(j);
             } else {
-                result -= key.getTfidfvalue();
+                result -= q.weight(j);
             }
         }
 
@@ -712,37 +1722,46 @@ public class FaqDataService {
     }
 
     /**
-     * bidirectional & normalized key word similarity,
-     * @param keys1 - keyword list 1
-     * @param keys2 - keyword list 2
+     * bidirectional & normalized key word similarity, by linear merge of sorted keyword ids,
+     * of a pair where one keyword contains the other only one is kept, see Keywords.removed
+     * @param keys1 - keyword set 1
+     * @param keys2 - keyword set 2
      * @return similarity result
      */
-    private double normalizedKeywordSim(List<Keyword> keys1, List<Keyword> keys2) {
-        Map<String, Double> keyMap1 = keys1.stream().collect(Collectors.toMap(Keyword::getName, Keyword::getTfidfvalue));
-        Map<String, Double> keyMap2 = keys2.stream().collect(Collectors.toMap(Keyword::getName, Keyword::getTfidfvalue));
-
-        List<String> removeList1 = getRemoveList(keyMap1, keyMap2);
-        List<String> removeList2 = getRemoveList(keyMap2, keyMap1);
-
-        removeList1.forEach(keyMap1::remove);
-        removeList2.forEach(keyMap2::remove);
-
+    private double normalizedKeywordSim(FaqFeatures.Keywords keys1, FaqFeatures.Keywords keys2) {
         double total1 = 0;
         double total2 = 0;
         double tfidf1 = 0;
         double tfidf2 = 0;
-        Set<Entry<String, Double>> set1 = keyMap1.entrySet();
-        for (Entry<String, Double> entry : set1) {
-            total1 += entry.getValue();
-            if (keyMap2.containsKey(entry.getKey())) {
-                tfidf1 += entry.getValue();
-            }
-        }
-        Set<Entry<String, Double>> set2 = keyMap2.entrySet();
-        for (Entry<String, Double> entry : set2) {
-            total2 += entry.getValue();
-            if (keyMap1.containsKey(entry.getKey())) {
-                tfidf2 += entry.getValue();
+        int i = 0;
+        int j = 0;
+        while (i < keys1.size() || j < keys2.size()) {
+            if (j >= keys2.size() || (i < keys1.size() && keys1.id(i) < keys2.id(j))) {
+                if (!keys1.removed(i, keys2, false)) {
+                    total1 += keys1.weight(i);
+                }
+                i++;
+            } else if (i >= keys1.size() || keys2.id(j) < keys1.id(i)) {
+                if (!keys2.removed(j, keys1, false)) {
+                    total2 += keys2.weight(j);
+                }
+                j++;
+            } else {
+                // shared keyword, counts only if kept on both sides
+                boolean kept1 = !keys1.removed(i, keys2, true);
+                boolean kept2 = !keys2.removed(j, keys1, true);
+                if (kept1) {
+                    total1 += keys1.weight(i);
+                }
+                if (kept2) {
+                    total2 += keys2.weight(j);
+                }
+                if (kept1 && kept2) {
+                    tfidf1 += keys1.weight(i);
+                    tfidf2 += keys2.weight(j);
+                }
+                i++;
+                j++;
             }
         }
         // normalized calculation
@@ -751,62 +1770,33 @@ public class FaqDataService {
         return (tfidf1 / total1 + tfidf2 / total2) / 2;
     }
 
-    private List<String> getRemoveList(Map<String, Double> keyMap1, Map<String, Double> keyMap2) {
-        List<String> toRemoveList1 = new ArrayList<>();
-        Set<Entry<String, Double>> set1 = keyMap1.entrySet();
-        for (Entry<String, Double> entry : set1) {
-            String s = entry.getKey();
-            for (Entry<String, Double> entry2 : set1) {
-                if (entry2.getKey().equals(s)) {
-                    continue;
-                }
-                if (entry2.getKey().contains(s)) {
-                    // longer key found
-                    if (keyMap2.containsKey(entry2.getKey())) {
-                        toRemoveList1.add(s);
-                    } else if (keyMap2.containsKey(s)){
-                        toRemoveList1.add(entry2.getKey());
-                    } else {
-                        // no related, remove shorter one
-                        toRemoveList1.add(s);
-                    }
-                }
-            }
-        }
-
-        return toRemoveList1;
-    }
-
     /**
-     * bidirectional key word similarity,
-     * @param keys1 - keyword list 1
-     * @param keys2 - keyword list 2
+     * bidirectional key word similarity, by linear merge of sorted keyword ids
+     * @param keys1 - keyword set 1
+     * @param keys2 - keyword set 2
      * @return similarity result
      */
-    private double duplexKeywordSim(List<Keyword> keys1, List<Keyword> keys2) {
-        List<String> keys1NameList = new ArrayList<>();
-        List<Double> keys1ValueList = new ArrayList<>();
-        List<String> keys2NameList = new ArrayList<>();
-        List<Double> keys2ValueList = new ArrayList<>();
-        for (Keyword key : keys1) {
-            keys1NameList.add(key.getName());
-            keys1ValueList.add(key.getTfidfvalue());
-        }
-
-        for (Keyword key : keys2) {
-            keys2NameList.add(key.getName());
-            keys2ValueList.add(key.getTfidfvalue());
-        }
-
+    private double duplexKeywordSim(FaqFeatures.Keywords keys1, FaqFeatures.Keywords keys2) {
         double result = 0.0;
         double total = 0.0;
-        Pair<Double, Double> p = sumTfidf(keys1NameList, keys1ValueList, keys2NameList, result, total);
-        result = p.getKey();
-        total = p.getValue();
-
-        p = sumTfidf(keys2NameList, keys2ValueList, keys1NameList, result, total);
-        result = p.getKey();
-        total = p.getValue();
+        int i = 0;
+        int j = 0;
+        while (i < keys1.size() || j < keys2.size()) {
+            if (j >= keys2.size() || (i < keys1.size() && keys1.id(i) < keys2.id(j))) {
+                result -= 2 * keys1.weight(i);
+                total += keys1.weight(i);
+                i++;
+            } else if (i >= keys1.size() || keys2.id(j) < keys1.id(i)) {
+                result -= 2 * keys2.weight(j);
+                total += keys2.weight(j);
+                j++;
+            } else {
+                result += keys1.weight(i) + keys2.weight(j);
+                total += keys1.weight(i) + keys2.weight(j);
+                i++;
+                j++;
+            }
+        }
 
         // normalization
         if (total == 0) {
@@ -818,19 +1808,6 @@ public class FaqDataService {
         return result;
     }
 
-    private Pair<Double, Double> sumTfidf(List<String> l1, List<Double> d1, List<String> l2, Double result, Double total) {
-        for (int i = 0; i < l1.size(); i++) {
-            if (l2.contains(l1.get(i))) {
-                result += d1.get(i);
-            } else {
-                result -= 2 * d1.get(i);
-            }
-            total += d1.get(i);
-        }
-
-        return new Pair<>(result, total);
-    }
-
     private String purge(String s) {
         // remove space
         s = s.replaceAll(" ", "");
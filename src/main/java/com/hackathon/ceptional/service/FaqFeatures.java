@@ -0,0 +1,320 @@
+package com.hackathon.ceptional.service;
+
+import com.hackathon.ceptional.index.ContainmentGraph;
+import com.hackathon.ceptional.util.CharSignature;
+import com.hackathon.ceptional.util.SparseTermVector;
+import com.hackathon.ceptional.util.TermDictionary;
+import com.qianxinyao.analysis.jieba.keyword.Keyword;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * features of a related question, computed once at init so that scoring a candidate only reads them
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+final class FaqFeatures {
+    private final int id;
+    private final int key;
+    private final String text;
+    private final CharSignature signature;
+    private final List<String> tokens;
+    private final SparseTermVector terms;
+    private final Keywords keywords;
+
+    /**
+     * @param id - question id, position in the related question list
+     * @param key - faq key
+     * @param text - related question
+     * @param tokens - segment tokens, null if the sim method does not segment
+     * @param terms - term vector of the tokens, null if the sim method does not segment
+     * @param keywords - tfidf keywords used for this related question
+     */
+    FaqFeatures(int id, int key, String text, List<String> tokens, SparseTermVector terms, Keywords keywords) {
+        this.id = id;
+        this.key = key;
+        this.text = text;
+        this.signature = CharSignature.of(text);
+        this.tokens = tokens;
+        this.terms = terms;
+        this.keywords = keywords;
+    }
+
+    int id() {
+        return id;
+    }
+
+    int key() {
+        return key;
+    }
+
+    String text() {
+        return text;
+    }
+
+    int length() {
+        return text.length();
+    }
+
+    CharSignature signature() {
+        return signature;
+    }
+
+    List<String> tokens() {
+        return tokens;
+    }
+
+    SparseTermVector terms() {
+        return terms;
+    }
+
+    Keywords keywords() {
+        return keywords;
+    }
+
+    /**
+     * character signatures of all related questions laid out column wise by question id,
+     * so that the signature bounds of a question against every candidate are one kernel call
+     */
+    static final class SignatureColumns {
+        static final SignatureColumns EMPTY = of(Collections.emptyList());
+
+        private final long[] lows;
+        private final long[] highs;
+        private final int[] sizes;
+
+        private SignatureColumns(long[] lows, long[] highs, int[] sizes) {
+            this.lows = lows;
+            this.highs = highs;
+            this.sizes = sizes;
+        }
+
+        /**
+         * @param features - features of all related questions, ordered by id
+         */
+        static SignatureColumns of(List<FaqFeatures> features) {
+            int count = features.size();
+            long[] lows = new long[count];
+            long[] highs = new long[count];
+            int[] sizes = new int[count];
+            for (int i = 0; i < count; i++) {
+                CharSignature signature = features.get(i).signature();
+                lows[i] = signature.low();
+                highs[i] = signature.high();
+                sizes[i] = signature.size();
+            }
+            return new SignatureColumns(lows, highs, sizes);
+        }
+
+        /**
+         * @return upper bounds of the distinct characters shared with every related question, by question id
+         */
+        int[] bounds(CharSignature signature) {
+            int[] out = new int[sizes.length];
+            signature.intersectionUpperBounds(lows, highs, sizes, out);
+            return out;
+        }
+    }
+
+    /**
+     * tfidf keywords with their names numbered by a dictionary, sorted distinct ids with parallel weights,
+     * and the pairs of keywords in the set where one contains the other
+     */
+    static final class Keywords {
+        static final Keywords EMPTY = new Keywords(Collections.emptyList(), new int[0], new double[0],
+                new int[0], new int[0]);
+
+        private final List<Keyword> list;
+        private final int[] ids;
+        private final double[] weights;
+
+        /**
+         * containment pairs by index, keyword shorter[p] is contained by keyword longer[p]
+         */
+        private final int[] shorter;
+        private final int[] longer;
+
+        private Keywords(List<Keyword> list, int[] ids, double[] weights, int[] shorter, int[] longer) {
+            this.list = list;
+            this.ids = ids;
+            this.weights = weights;
+            this.shorter = shorter;
+            this.longer = longer;
+        }
+
+        /**
+         * keywords of a related question, names are added to the dictionary and containment is read from
+         * the graph of the dictionary
+         */
+        static Keywords of(List<Keyword> list, TermDictionary dictionary, ContainmentGraph graph) {
+            if (list == null) {
+                return EMPTY;
+            }
+            int[] ids = new int[list.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = dictionary.add(list.get(i).getName());
+            }
+            return build(list, ids, graph);
+        }
+
+        /**
+         * keywords of texts compared to each other, names are added to a dictionary of those texts
+         */
+        static Keywords of(List<Keyword> list, TermDictionary dictionary) {
+            int[] ids = new int[list.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = dictionary.add(list.get(i).getName());
+            }
+            return build(list, ids, null);
+        }
+
+        /**
+         * keywords of a question, names not in the dictionary get negative ids as they can not be shared,
+         * a repeated unknown name gets the id of its first occurrence
+         */
+        static Keywords lookup(List<Keyword> list, TermDictionary dictionary) {
+            int[] ids = new int[list.size()];
+            for (int i = 0; i < ids.length; i++) {
+                String name = list.get(i).getName();
+                int id = dictionary.lookup(name);
+                if (id < 0) {
+                    id = -1 - i;
+                    for (int j = 0; j < i; j++) {
+                        if (ids[j] < 0 && list.get(j).getName().equals(name)) {
+                            id = ids[j];
+                            break;
+                        }
+                    }
+                }
+                ids[i] = id;
+            }
+            return build(list, ids, null);
+        }
+
+        /**
+         * sort by id keeping the first of equal ids, then find containment pairs from the graph,
+         * or by comparing names if there is no graph
+         */
+        private static Keywords build(List<Keyword> list, int[] raw, ContainmentGraph graph) {
+            int[] order = new int[raw.length];
+            for (int i = 0; i < order.length; i++) {
+                int pos = i;
+                while (pos > 0 && raw[order[pos - 1]] > raw[i]) {
+                    order[pos] = order[pos - 1];
+                    pos--;
+                }
+                order[pos] = i;
+            }
+            int size = 0;
+            int[] ids = new int[raw.length];
+            double[] weights = new double[raw.length];
+            String[] names = new String[raw.length];
+            for (int i : order) {
+                if (size == 0 || ids[size - 1] != raw[i]) {
+                    ids[size] = raw[i];
+                    weights[size] = list.get(i).getTfidfvalue();
+                    names[size] = list.get(i).getName();
+                    size++;
+                }
+            }
+            if (size < raw.length) {
+                ids = Arrays.copyOf(ids, size);
+                weights = Arrays.copyOf(weights, size);
+            }
+
+            List<int[]> pairs = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                if (graph != null) {
+                    for (int container : graph.containers(ids[i])) {
+                        int j = Arrays.binarySearch(ids, container);
+                        if (j >= 0) {
+                            pairs.add(new int[]{i, j});
+                        }
+                    }
+                } else {
+                    for (int j = 0; j < size; j++) {
+                        if (names[j].length() > names[i].length() && names[j].contains(names[i])) {
+                            pairs.add(new int[]{i, j});
+                        }
+                    }
+                }
+            }
+            int[] shorter = new int[pairs.size()];
+            int[] longer = new int[pairs.size()];
+            for (int p = 0; p < shorter.length; p++) {
+                shorter[p] = pairs.get(p)[0];
+                longer[p] = pairs.get(p)[1];
+            }
+            return new Keywords(list, ids, weights, shorter, longer);
+        }
+
+        List<Keyword> list() {
+            return list;
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        int id(int i) {
+            return ids[i];
+        }
+
+        double weight(int i) {
+            return weights[i];
+        }
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(ids, id) >= 0;
+        }
+
+        /**
+         * whether keyword i is dropped when compared with another set, for a pair where one keyword contains
+         * the other: the shorter one is dropped if the longer one is shared or neither is shared,
+         * the longer one is dropped if only the shorter one is shared
+         * @param i - keyword index
+         * @param other - keywords compared with
+         * @param shared - whether keyword i is also in other
+         */
+        boolean removed(int i, Keywords other, boolean shared) {
+            for (int p = 0; p < shorter.length; p++) {
+                if (shorter[p] == i) {
+                    if (!shared || other.contains(ids[longer[p]])) {
+                        return true;
+                    }
+                } else if (longer[p] == i && !shared && other.contains(ids[shorter[p]])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * count of keywords shared with another keyword set, by linear merge
+         */
+        int hits(Keywords other) {
+            int[] a = ids;
+            int[] b = other.ids;
+            int i = 0;
+            int j = 0;
+            int common = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    common++;
+                    i++;
+                    j++;
+                }
+            }
+            return common;
+        }
+    }
+}
@@ -3,13 +3,16 @@ package com.hackathon.ceptional.service;
 import com.hackathon.ceptional.config.Constants;
 import com.hackathon.ceptional.model.ResultModel;
 import com.hackathon.ceptional.model.ResultModel.Answer;
+import com.hackathon.ceptional.model.ScoreModel;
 import com.hackathon.ceptional.model.SimilarityModel;
 import com.hackathon.ceptional.util.HuToolUtil;
+import com.hackathon.ceptional.util.MetricsUtil;
 import com.hackathon.ceptional.util.SimilarityUtil;
 import com.hackathon.ceptional.util.ThreadPoolUtil;
 import com.huaban.analysis.jieba.JiebaSegmenter;
 import com.qianxinyao.analysis.jieba.keyword.Keyword;
 import com.qianxinyao.analysis.jieba.keyword.TFIDFAnalyzer;
+import javafx.util.Pair;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -20,6 +23,7 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * faq match service
@@ -41,6 +45,8 @@ public class FaqMatchService {
     @Value("${faq.top.count}")
     private int topCount = 5;
 
+    private final TFIDFAnalyzer tfidfAnalyzer = new TFIDFAnalyzer();
+
     private FaqDataService faqDataService;
     @Autowired
     private void setDataInitService(FaqDataService service) {
@@ -49,13 +55,29 @@ public class FaqMatchService {
 
     public ResultModel doMatch(String question) {
         log.info("doMatch running for q: {}, match threshold: {}", question, threshold);
-        List<Keyword> questionKeyWord = faqDataService.getKeywords(question);
+        // exact lookup, verbatim repeats of training questions
+        int exactKey = faqDataService.exactMatch(question);
+        if (exactKey >= 0) {
+            return buildResult(question, exactKey, 1);
+        }
+
+        // question features, computed once and shared by every partition
+        QueryFeatures query = faqDataService.queryFeatures(question);
+
+        // near duplicate fast path, skip the full match
+        Pair<Integer, Double> nearDuplicate = faqDataService.nearDuplicateMatch(query);
+        if (nearDuplicate != null) {
+            return buildResult(question, nearDuplicate.getKey(), nearDuplicate.getValue());
+        }
+
+        Map<Integer, List<FaqFeatures>> candidates = faqDataService.retrieveCandidates(query);
         ConcurrentHashMap<Integer, Double> resultMap = new ConcurrentHashMap<>(Constants.THREAD_COUNT);
         // using async runner to do match
         CountDownLatch latchCounter = new CountDownLatch(Constants.THREAD_COUNT);
         for (int x = 0; x < Constants.THREAD_COUNT; x++) {
             int xInt = x;
-            ThreadPoolUtil.executeMultiThread(() -> faqDataService.calcSimilarity(question, questionKeyWord, xInt, latchCounter, resultMap));
+            ThreadPoolUtil.executeMultiThread(() -> faqDataService.calcSimilarity(query, candidates, xInt,
+                    latchCounter, resultMap));
         }
 
         try {
@@ -79,6 +101,27 @@ public class FaqMatchService {
             }
         }
 
+        return buildResult(question, key, highestScore);
+    }
+
+    /**
+     * score breakdown of the highest scored related questions
+     * @param question - input question
+     * @param topK - count of explanations, default top count if not positive
+     * @return explanations ordered from highest to lowest score
+     */
+    public List<ScoreModel> explain(String question, int topK) {
+        return faqDataService.explain(question, topK > 0 ? topK : topCount);
+    }
+
+    /**
+     * build match result
+     * @param question - input question
+     * @param key - matched faq key, -1 if nothing matched
+     * @param highestScore - similarity of the matched faq
+     * @return result model
+     */
+    private ResultModel buildResult(String question, int key, double highestScore) {
         ResultModel result = new ResultModel();
         List<Answer> resultAnswers = new ArrayList<>();
         result.setStatus(0);
@@ -95,7 +138,7 @@ public class FaqMatchService {
         result.setAnswer_score(highestScore);
 
         String finalAnswer = "";
-        if (highestScore >= threshold) {
+        if (key >= 0 && highestScore >= threshold) {
             // only return the result with 60 or higher score
             finalAnswer = faqDataService.getAnswers().get(key);
             Answer answer = result.new Answer();
@@ -121,14 +164,14 @@ public class FaqMatchService {
         double metricLcs = SimilarityUtil.metricLcsSimilarity(s1, s2);
         double nGram = SimilarityUtil.nGramSimilarity(s1, s2);
 
-        Vector<String> v1 = HuToolUtil.participleChinese(s1);
-        Vector<String> v2 = HuToolUtil.participleChinese(s2);
-        Vector<String> v3 = HuToolUtil.participleHanLP(s1);
-        Vector<String> v4 = HuToolUtil.participleHanLP(s2);
-        Vector<String> v5 = HuToolUtil.participleIk(s1);
-        Vector<String> v6 = HuToolUtil.participleIk(s2);
-        Vector<String> v7 = HuToolUtil.participleJieBa(s1);
-        Vector<String> v8 = HuToolUtil.participleJieBa(s2);
+        List<String> v1 = segment(FaqDataService.CACHE_CHINESE, s1, HuToolUtil::participleChinese);
+        List<String> v2 = segment(FaqDataService.CACHE_CHINESE, s2, HuToolUtil::participleChinese);
+        List<String> v3 = segment(FaqDataService.CACHE_HANLP, s1, HuToolUtil::participleHanLP);
+        List<String> v4 = segment(FaqDataService.CACHE_HANLP, s2, HuToolUtil::participleHanLP);
+        List<String> v5 = segment(FaqDataService.CACHE_IK, s1, HuToolUtil::participleIk);
+        List<String> v6 = segment(FaqDataService.CACHE_IK, s2, HuToolUtil::participleIk);
+        List<String> v7 = segment(FaqDataService.CACHE_JIEBA, s1, HuToolUtil::participleJieBa);
+        List<String> v8 = segment(FaqDataService.CACHE_JIEBA, s2, HuToolUtil::participleJieBa);
         double rawSim = HuToolUtil.findSimilarity(s1, s2);
         double chineseSim = HuToolUtil.getSimilarity(v1, v2);
         double hanlpSim = HuToolUtil.getSimilarity(v3, v4);
@@ -139,9 +182,19 @@ public class FaqMatchService {
                 rawSim, chineseSim, hanlpSim, ikSim, jiebaSim);
     }
 
+    /**
+     * segments from the shared segment cache, cached lists are read only as they are shared by requests
+     */
+    private List<String> segment(String mode, String text, Function<String, List<String>> segmenter) {
+        return faqDataService.cached(mode, text, t -> {
+            List<String> segments = segmenter.apply(t);
+            return segments == null ? null : Collections.unmodifiableList(segments);
+        });
+    }
+
     public String jiebaTfidf(String s, int mode) {
-        TFIDFAnalyzer tfidfAnalyzer=new TFIDFAnalyzer();
-        List<Keyword> list=tfidfAnalyzer.analyzeEx(s, topCount, mode);
+        List<Keyword> list = faqDataService.cached(FaqDataService.CACHE_JIEBA_TFIDF + mode, s,
+                t -> Collections.unmodifiableList(tfidfAnalyzer.analyzeEx(t, topCount, mode)));
         StringBuilder sb = new StringBuilder();
         for (Keyword word:list) {
             sb.append(word.getName());
@@ -154,8 +207,8 @@ public class FaqMatchService {
     }
 
     public String wordSegment(String s) {
-        JiebaSegmenter wordSplit = new JiebaSegmenter();
-        return wordSplit.process(s, JiebaSegmenter.SegMode.INDEX).toString();
+        return faqDataService.cached(FaqDataService.CACHE_JIEBA_INDEX, s,
+                t -> new JiebaSegmenter().process(t, JiebaSegmenter.SegMode.INDEX).toString());
     }
 
     public double faqTfidfSim(String faq, String question) {
@@ -165,4 +218,14 @@ public class FaqMatchService {
     public double symmetricTfidfSim(String s1, String s2) {
         return faqDataService.tfidfSim(s1, s2);
     }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> result = new LinkedHashMap<>(MetricsUtil.snapshot());
+        result.put("exact.hit.ratio", MetricsUtil.ratio(Constants.METRIC_EXACT_HIT, Constants.METRIC_EXACT_LOOKUP));
+        result.put("cascade.scored.ratio",
+                MetricsUtil.ratio(Constants.METRIC_CASCADE_SCORED, Constants.METRIC_CASCADE_CANDIDATE));
+        result.put("segment.cache.hit.ratio",
+                MetricsUtil.ratio(Constants.METRIC_SEGMENT_CACHE_HIT, Constants.METRIC_SEGMENT_CACHE_LOOKUP));
+        return result;
+    }
 }
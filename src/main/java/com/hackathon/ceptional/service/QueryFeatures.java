@@ -0,0 +1,95 @@
+package com.hackathon.ceptional.service;
+
+import com.hackathon.ceptional.util.CharSignature;
+import com.hackathon.ceptional.util.SparseTermVector;
+import com.qianxinyao.analysis.jieba.keyword.Keyword;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * features of an input question, computed once per match and shared by every partition thread
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/18
+ */
+final class QueryFeatures {
+    private final String text;
+    private final CharSignature signature;
+    private final int[] signatureBounds;
+    private final List<String> tokens;
+    private final SparseTermVector terms;
+    private final List<Keyword> keywordList;
+    private final FaqFeatures.Keywords keywords;
+    private final Map<String, Integer> wordFreq;
+
+    /**
+     * @param text - uppercased question
+     * @param tokens - segment tokens, null if the sim method does not segment
+     * @param terms - term vector of the tokens over the faq dictionary, null if the sim method does not segment
+     * @param keywordList - tfidf keywords of the question
+     * @param keywords - keywords numbered by the faq keyword dictionary
+     * @param wordFreq - word frequency of the uppercased question
+     * @param columns - signatures of all related questions to bound against, null if the bounds are not used
+     */
+    QueryFeatures(String text, List<String> tokens, SparseTermVector terms, List<Keyword> keywordList,
+                  FaqFeatures.Keywords keywords, Map<String, Integer> wordFreq, FaqFeatures.SignatureColumns columns) {
+        this.text = text;
+        this.signature = CharSignature.of(text);
+        this.signatureBounds = columns == null ? null : columns.bounds(signature);
+        this.tokens = tokens;
+        this.terms = terms;
+        this.keywordList = keywordList;
+        this.keywords = keywords;
+        this.wordFreq = wordFreq;
+    }
+
+    /**
+     * same question with its text replaced, e.g. a keyword replaced by a synonym,
+     * keywords and word frequency are kept from the original question, signature bounds are not computed
+     */
+    QueryFeatures replace(String text, List<String> tokens, SparseTermVector terms) {
+        return new QueryFeatures(text, tokens, terms, keywordList, keywords, wordFreq, null);
+    }
+
+    String text() {
+        return text;
+    }
+
+    int length() {
+        return text.length();
+    }
+
+    CharSignature signature() {
+        return signature;
+    }
+
+    /**
+     * @return upper bounds of the distinct characters shared with every related question by question id,
+     * null if not computed
+     */
+    int[] signatureBounds() {
+        return signatureBounds;
+    }
+
+    List<String> tokens() {
+        return tokens;
+    }
+
+    SparseTermVector terms() {
+        return terms;
+    }
+
+    List<Keyword> keywordList() {
+        return keywordList;
+    }
+
+    FaqFeatures.Keywords keywords() {
+        return keywords;
+    }
+
+    Map<String, Integer> wordFreq() {
+        return wordFreq;
+    }
+}
@@ -0,0 +1,222 @@
+package com.hackathon.ceptional.service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.hackathon.ceptional.util.HuToolUtil;
+import com.hackathon.ceptional.util.SegmentUtil;
+import com.hackathon.ceptional.util.SimilarityUtil;
+import com.hackathon.ceptional.util.SparseTermVector;
+import com.hackathon.ceptional.util.TermDictionary;
+import com.hackathon.ceptional.util.ThreadPoolUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * pairwise similarity matrix of many texts, rows are computed on the fork join pool and written as ndjson
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+@Service
+@Slf4j
+public class SimilarityMatrixService {
+
+    /**
+     * metric names, same as the fields of SimilarityModel
+     */
+    public static final List<String> METRICS = Collections.unmodifiableList(Arrays.asList("jaro", "editDistance",
+            "damerau", "jacCard", "metricLcs", "nGram", "rawSim", "chineseSim", "hanlpSim", "ikeaSim", "jiebaSim"));
+
+
+    /**
+     * rows of one fork join leaf task
+     */
+    private static final int LEAF_ROWS = 2;
+
+    /**
+     * cells of all metrics computed and written together, only one block of the matrix is in memory,
+     * 1M doubles is 8 MB
+     */
+    @Value("${faq.matrix.block.cells}")
+    private int blockCells = 1 << 20;
+
+    /**
+     * most texts of rows or of columns in one request
+     */
+    @Value("${faq.matrix.max.texts}")
+    private int maxTexts = 10000;
+
+    /**
+     * most cells, rows x columns, of one request
+     */
+    @Value("${faq.matrix.max.cells}")
+    private long maxCells = 10000000;
+
+    /**
+     * @param rows - row count
+     * @param columns - column count, 0 for rows x rows
+     * @return true if a matrix of this size is accepted
+     */
+    public boolean acceptable(int rows, int columns) {
+        int cols = columns == 0 ? rows : columns;
+        return rows <= maxTexts && cols <= maxTexts && (long) rows * cols <= maxCells;
+    }
+
+    /**
+     * similarity of row i and column j
+     */
+    private interface PairMetric {
+        double apply(int i, int j);
+    }
+
+    /**
+     * write the similarity matrix of rows and columns as ndjson, one line per row:
+     * {"row": i, "text": row text, metric: [similarity to every column], ...}
+     * @param rows - row texts
+     * @param columns - column texts, null or empty for rows x rows
+     * @param metrics - metric names, null or empty for all
+     * @param out - output, flushed after every block of rows
+     * @throws IllegalArgumentException on unknown metric names
+     */
+    public void matrix(List<String> rows, List<String> columns, List<String> metrics, OutputStream out)
+            throws IOException {
+        List<String> cols = columns == null || columns.isEmpty() ? rows : columns;
+        List<String> names = metrics == null || metrics.isEmpty() ? METRICS : metrics;
+        PairMetric[] kernels = new PairMetric[names.size()];
+        for (int m = 0; m < names.size(); m++) {
+            kernels[m] = compile(names.get(m), rows, cols);
+        }
+        log.info("similarity matrix begin, rows: {}, columns: {}, metrics: {}", rows.size(), cols.size(), names);
+
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        // block rows from the cell budget, at least one row however wide
+        long rowCells = Math.max(1L, (long) cols.size() * kernels.length);
+        int blockRows = (int) Math.max(1, Math.min(rows.size(), blockCells / rowCells));
+        double[][][] block = new double[blockRows][][];
+        for (int from = 0; from < rows.size(); from += blockRows) {
+            int to = Math.min(from + blockRows, rows.size());
+            ThreadPoolUtil.forkJoinPool().invoke(new RowTask(kernels, cols.size(), from, to, from, block));
+            for (int i = from; i < to; i++) {
+                JsonObject line = new JsonObject();
+                line.addProperty("row", i);
+                line.addProperty("text", rows.get(i));
+                for (int m = 0; m < names.size(); m++) {
+                    JsonArray values = new JsonArray(cols.size());
+                    for (double v : block[i - from][m]) {
+                        values.add(v);
+                    }
+                    line.add(names.get(m), values);
+                }
+                writer.write(line.toString());
+                writer.write('\n');
+            }
+            writer.flush();
+        }
+        log.info("similarity matrix done, rows: {}, columns: {}", rows.size(), cols.size());
+    }
+
+    /**
+     * compile a metric, texts are segmented once here instead of once per pair
+     */
+    private PairMetric compile(String name, List<String> rows, List<String> cols) {
+        switch (name) {
+            case "jaro":
+                return (i, j) -> SimilarityUtil.jaroSimilarity(rows.get(i), cols.get(j));
+            case "editDistance":
+                return (i, j) -> SimilarityUtil.sim(rows.get(i), cols.get(j));
+            case "damerau":
+                return (i, j) -> SimilarityUtil.damerauSimilarity(rows.get(i), cols.get(j));
+            case "jacCard":
+                return (i, j) -> SimilarityUtil.jacCardSimilarity(rows.get(i), cols.get(j));
+            case "metricLcs":
+                return (i, j) -> SimilarityUtil.metricLcsSimilarity(rows.get(i), cols.get(j));
+            case "nGram":
+                return (i, j) -> SimilarityUtil.nGramSimilarity(rows.get(i), cols.get(j));
+            case "rawSim":
+                return (i, j) -> HuToolUtil.findSimilarity(rows.get(i), cols.get(j));
+            case "chineseSim":
+                return segmented(SegmentUtil::chinese, rows, cols);
+            case "hanlpSim":
+                return segmented(SegmentUtil::hanLP, rows, cols);
+            case "ikeaSim":
+                return segmented(text -> SegmentUtil.ik(text, false), rows, cols);
+            case "jiebaSim":
+                return segmented(SegmentUtil::jieba, rows, cols);
+            default:
+                throw new IllegalArgumentException("unknown similarity metric: " + name);
+        }
+    }
+
+    /**
+     * hutool cosine of segment lists, every text is segmented once on the fork join pool
+     */
+    private PairMetric segmented(Function<String, String[]> segmenter, List<String> rows, List<String> cols) {
+        TermDictionary dictionary = new TermDictionary();
+        SparseTermVector[] rowTerms = segment(segmenter, rows, dictionary);
+        SparseTermVector[] colTerms = cols == rows ? rowTerms : segment(segmenter, cols, dictionary);
+        return (i, j) -> HuToolUtil.getSimilarity(rowTerms[i], colTerms[j]);
+    }
+
+    private SparseTermVector[] segment(Function<String, String[]> segmenter, List<String> texts,
+                                       TermDictionary dictionary) {
+        SparseTermVector[] vectors = new SparseTermVector[texts.size()];
+        // a parallel stream started inside a fork join task runs on that pool
+        ThreadPoolUtil.forkJoinPool().submit(() -> IntStream.range(0, texts.size()).parallel()
+                .forEach(i -> vectors[i] = SparseTermVector.of(Arrays.asList(segmenter.apply(texts.get(i))), dictionary))).join();
+        return vectors;
+    }
+
+    /**
+     * computes rows [from, to) of all metrics into block, split in halves down to LEAF_ROWS rows
+     */
+    private static final class RowTask extends RecursiveAction {
+        private final PairMetric[] kernels;
+        private final int columns;
+        private final int from;
+        private final int to;
+        private final int offset;
+        private final double[][][] block;
+
+        private RowTask(PairMetric[] kernels, int columns, int from, int to, int offset, double[][][] block) {
+            this.kernels = kernels;
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+            this.offset = offset;
+            this.block = block;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_ROWS) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RowTask(kernels, columns, from, mid, offset, block),
+                        new RowTask(kernels, columns, mid, to, offset, block));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                double[][] row = new double[kernels.length][columns];
+                for (int m = 0; m < kernels.length; m++) {
+                    for (int j = 0; j < columns; j++) {
+                        row[m][j] = kernels[m].apply(i, j);
+                    }
+                }
+                block[i - offset] = row;
+            }
+        }
+    }
+}
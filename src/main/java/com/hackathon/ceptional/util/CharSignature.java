@@ -0,0 +1,137 @@
+package com.hackathon.ceptional.util;
+
+import java.util.Arrays;
+
+/**
+ * character set of a text, sorted distinct characters plus a 128 bit hashed bitset
+ *
+ * a character of one set whose bit is missing from the other signature can not be shared,
+ * so popcount of the bits only one side has bounds the intersection before any merge
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+public final class CharSignature {
+    private final char[] chars;
+    private final long low;
+    private final long high;
+
+    private CharSignature(char[] chars, long low, long high) {
+        this.chars = chars;
+        this.low = low;
+        this.high = high;
+    }
+
+    /**
+     * signature of a text
+     * @param text - input text
+     * @return character signature
+     */
+    public static CharSignature of(String text) {
+        char[] sorted = text.toCharArray();
+        Arrays.sort(sorted);
+        int count = 0;
+        long low = 0;
+        long high = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i > 0 && sorted[i] == sorted[i - 1]) {
+                continue;
+            }
+            char c = sorted[i];
+            sorted[count++] = c;
+            int bit = (c * 0x9E3779B9) >>> 25;
+            if (bit < Long.SIZE) {
+                low |= 1L << bit;
+            } else {
+                high |= 1L << bit;
+            }
+        }
+        return new CharSignature(count == sorted.length ? sorted : Arrays.copyOf(sorted, count), low, high);
+    }
+
+    public int size() {
+        return chars.length;
+    }
+
+    public long low() {
+        return low;
+    }
+
+    public long high() {
+        return high;
+    }
+
+    /**
+     * distinct characters shared with another signature, by linear merge
+     */
+    public int intersection(CharSignature other) {
+        char[] a = chars;
+        char[] b = other.chars;
+        int i = 0;
+        int j = 0;
+        int common = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                common++;
+                i++;
+                j++;
+            }
+        }
+        return common;
+    }
+
+    /**
+     * upper bound of the shared distinct characters, from the signatures only
+     */
+    public int intersectionUpperBound(CharSignature other) {
+        int onlyThis = Long.bitCount(low & ~other.low) + Long.bitCount(high & ~other.high);
+        int onlyOther = Long.bitCount(other.low & ~low) + Long.bitCount(other.high & ~high);
+        return Math.min(chars.length - onlyThis, other.chars.length - onlyOther);
+    }
+
+    /**
+     * intersectionUpperBound against many signatures laid out column wise, one pass over flat arrays
+     * @param lows - low bits of the other signatures
+     * @param highs - high bits of the other signatures
+     * @param sizes - distinct characters of the other signatures
+     * @param out - bounds, out[i] against signature i
+     */
+    public void intersectionUpperBounds(long[] lows, long[] highs, int[] sizes, int[] out) {
+        for (int i = 0; i < sizes.length; i++) {
+            int onlyThis = Long.bitCount(low & ~lows[i]) + Long.bitCount(high & ~highs[i]);
+            int onlyOther = Long.bitCount(lows[i] & ~low) + Long.bitCount(highs[i] & ~high);
+            out[i] = Math.min(chars.length - onlyThis, sizes[i] - onlyOther);
+        }
+    }
+
+    /**
+     * jaccard similarity of the character sets, float division as SimilarityUtil.jacCardSimilarity
+     */
+    public double jaccard(CharSignature other) {
+        float common = intersection(other);
+        return common / (chars.length + other.chars.length - common);
+    }
+
+    /**
+     * upper bound of jaccard similarity, from the signatures only
+     */
+    public double jaccardUpperBound(CharSignature other) {
+        return jaccardUpperBound(intersectionUpperBound(other), other.chars.length);
+    }
+
+    /**
+     * upper bound of jaccard similarity from a precomputed intersection upper bound,
+     * e.g. one of intersectionUpperBounds
+     * @param commonBound - upper bound of the shared distinct characters
+     * @param otherSize - distinct characters of the other signature
+     */
+    public double jaccardUpperBound(int commonBound, int otherSize) {
+        float common = commonBound;
+        return common / (chars.length + otherSize - common);
+    }
+}
@@ -1,23 +1,12 @@
 package com.hackathon.ceptional.util;
 
-import cn.hutool.core.collection.CollUtil;
-import cn.hutool.extra.tokenizer.Result;
-import cn.hutool.extra.tokenizer.TokenizerEngine;
-import cn.hutool.extra.tokenizer.TokenizerUtil;
-import cn.hutool.extra.tokenizer.Word;
-import cn.hutool.extra.tokenizer.engine.hanlp.HanLPEngine;
-import cn.hutool.extra.tokenizer.engine.jieba.JiebaEngine;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.hankcs.hanlp.HanLP;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
-import org.wltea.analyzer.core.IKSegmenter;
-import org.wltea.analyzer.core.Lexeme;
 
 import javax.util.streamex.EntryStream;
-import java.io.IOException;
-import java.io.StringReader;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.Map.Entry;
@@ -37,30 +26,27 @@ public class HuToolUtil {
      */
     private static double THRESHOLD = 0.2;
 
+    /**
+     * punctuation filtered from segments, a segment which is a substring of it is dropped
+     */
+    private static final String PUNCTUATION = "`~!@#$^&*()=|{}':;',\\[\\]" +
+            ".<>/?~！@#￥……&*（）——|{}【】‘；：”“'。，、？ ";
+
+    /**
+     * inline tags whose start and end tags only wrap text, without special parsing rules
+     */
+    private static final Set<String> INLINE_TAGS = new HashSet<>(Arrays.asList(
+            "a", "b", "i", "u", "em", "strong", "span", "font", "small", "big", "sub", "sup"));
+
     /**
      * 通过Ik 进行将句子分词
      *
      * @param text - input text
-     * @return segment list
+     * @return segment list, null if no segment
      */
     public static Vector<String> participleIk(String text) {
-        //对输入进行分词
-        Vector<String> str = new Vector<>();
-        try {
-            StringReader reader = new StringReader(text);
-            //当为true时，分词器进行最大词长切分
-            IKSegmenter ik = new IKSegmenter(reader, false);
-            Lexeme lexeme;
-            while ((lexeme = ik.next()) != null) {
-                str.add(lexeme.getLexemeText());
-            }
-            if (str.size() == 0) {
-                return null;
-            }
-        } catch (IOException e) {
-            log.error(e.getMessage());
-        }
-        return str;
+        String[] tokens = SegmentUtil.ik(text, false);
+        return tokens.length == 0 ? null : new Vector<>(Arrays.asList(tokens));
     }
 
     /**
@@ -70,11 +56,7 @@ public class HuToolUtil {
      * @return segment result
      */
     public static Vector<String> participleJieBa(String text) {
-        JiebaEngine engine = new JiebaEngine();
-        Result results = engine.parse(text);
-        //输出：这 两个 方法 的 区别 在于 返回 值
-        String result = CollUtil.join((Iterator<Word>) results, ",");
-        return new Vector<>(Arrays.asList(result.split(",")));
+        return new Vector<>(Arrays.asList(SegmentUtil.jieba(text)));
     }
 
     /**
@@ -85,26 +67,14 @@ public class HuToolUtil {
      */
     public static Vector<String> participleChinese(String text) {
         //自动根据用户引入的分词库的jar来自动选择使用的引擎
-        TokenizerEngine engine = TokenizerUtil.createEngine();
-        //解析文本
-        //String text = "这两个方法的区别在于返回值";
-        Result results = engine.parse(text);
-        //输出：这 两个 方法 的 区别 在于 返回 值
-        String result = CollUtil.join((Iterator<Word>) results, ",");
-        return new Vector<>(Arrays.asList(result.split(",")));
+        return new Vector<>(Arrays.asList(SegmentUtil.chinese(text)));
     }
 
     /**
      * 采用 HanLP 进行自定义分词
      */
     public static Vector<String> participleHanLP(String text) {
-        TokenizerEngine engine = new HanLPEngine();
-        //解析文本
-        //String text = "这两个方法的区别在于返回值";
-        Result results = engine.parse(text);
-        //输出：这 两个 方法 的 区别 在于 返回 值
-        String result = CollUtil.join((Iterator<Word>) results, ",");
-        return new Vector<>(Arrays.asList(result.split(",")));
+        return new Vector<>(Arrays.asList(SegmentUtil.hanLP(text)));
     }
 
     /**
@@ -114,7 +84,7 @@ public class HuToolUtil {
      * @param TTwo - list 2
      * @return similarity value
      */
-    public static double getSimilarity(Vector<String> TOne, Vector<String> TTwo) {
+    public static double getSimilarity(List<String> TOne, List<String> TTwo) {
         int sizeOne, sizeTwo;
         if (TOne != null && (sizeOne = TOne.size()) > 0 && TTwo != null && (sizeTwo = TTwo.size()) > 0) {
             Map<String, double[]> T = new HashMap<>();
@@ -168,6 +138,17 @@ public class HuToolUtil {
         return 0;
     }
 
+    /**
+     * 返回百分比计算, same as getSimilarity of segment lists on precomputed sparse vectors
+     *
+     * @param one - vector one
+     * @param two - vector two
+     * @return similarity value
+     */
+    public static double getSimilarity(SparseTermVector one, SparseTermVector two) {
+        return one.cosine(two, THRESHOLD);
+    }
+
     /**
      * Java利用hanlp完成语句相似度分析
      *
@@ -178,44 +159,26 @@ public class HuToolUtil {
     public static double findSimilarity(String sentenceOne, String sentenceTwo) {
         List<String> sentOneWords = getSplitWords(sentenceOne);
         List<String> sentTwoWords = getSplitWords(sentenceTwo);
-        List<String> allWords = mergeList(sentOneWords, sentTwoWords);
-        int[] statisticOne = statistic(allWords, sentOneWords);
-        int[] statisticTwo = statistic(allWords, sentTwoWords);
+        // term frequency of both sentences in one hash pass, [0] - sentence 1, [1] - sentence 2
+        Map<String, int[]> statistic = new HashMap<>((sentOneWords.size() + sentTwoWords.size()) * 2);
+        for (String word : sentOneWords) {
+            statistic.computeIfAbsent(word, w -> new int[2])[0]++;
+        }
+        for (String word : sentTwoWords) {
+            statistic.computeIfAbsent(word, w -> new int[2])[1]++;
+        }
+        // integer sums, exact in any order
         double dividend = 0;
         double divisor1 = 0;
         double divisor2 = 0;
-        int length = statisticOne.length;
-        for (int i = 0; i < length; i++) {
-            dividend += statisticOne[i] * statisticTwo[i];
-            divisor1 += Math.pow(statisticOne[i], 2);
-            divisor2 += Math.pow(statisticTwo[i], 2);
+        for (int[] count : statistic.values()) {
+            dividend += count[0] * count[1];
+            divisor1 += count[0] * count[0];
+            divisor2 += count[1] * count[1];
         }
         return dividend / (Math.sqrt(divisor1) * Math.sqrt(divisor2));
     }
 
-    private static int[] statistic(List<String> allWords, List<String> sentWords) {
-        int[] result = new int[allWords.size()];
-        int size = allWords.size();
-        for (int i = 0; i < size; i++) {
-            result[i] = Collections.frequency(sentWords, allWords.get(i));
-        }
-        return result;
-    }
-
-    /**
-     * 去重
-     *
-     * @param listOne - list one
-     * @param listTwo - list two
-     * @return merged list
-     */
-    private static List<String> mergeList(List<String> listOne, List<String> listTwo) {
-        List<String> result = new ArrayList<>();
-        result.addAll(listOne);
-        result.addAll(listTwo);
-        return result.stream().distinct().collect(Collectors.toList());
-    }
-
     /**
      * 过滤标签
      *
@@ -224,10 +187,85 @@ public class HuToolUtil {
      */
     private static List<String> getSplitWords(String sentence) {
         // 去除掉html标签
-        sentence = Jsoup.parse(sentence.replace(" ", "")).body().text();
+        sentence = stripHtml(sentence.replace(" ", ""));
         // 标点符号会被单独分为一个Term，去除之
-        return HanLP.segment(sentence).stream().map(a -> a.word).filter(s -> !("`~!@#$^&*()=|{}':;',\\[\\]" +
-                ".<>/?~！@#￥……&*（）——|{}【】‘；：”“'。，、？ ").contains(s)).collect(Collectors.toList());
+        return HanLP.segment(sentence).stream().map(a -> a.word).filter(s -> !PUNCTUATION.contains(s))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * body text of a html fragment, same as Jsoup.parse(html).body().text()
+     *
+     * one scan drops inline tags, collapses whitespace and skips invisible characters; entities, comments
+     * and other tags are left to jsoup, the scan gives up on them
+     *
+     * @param html - html fragment
+     * @return text
+     */
+    public static String stripHtml(String html) {
+        StringBuilder sb = new StringBuilder(html.length());
+        int length = html.length();
+        int i = 0;
+        while (i < length) {
+            char c = html.charAt(i);
+            if (c == '<') {
+                int end = skipInlineTag(html, i);
+                if (end < 0) {
+                    return Jsoup.parse(html).body().text();
+                }
+                // 0 if not a tag, the '<' is text
+                if (end > 0) {
+                    i = end;
+                    continue;
+                }
+            } else if (c == '&' || c == '\0') {
+                return Jsoup.parse(html).body().text();
+            }
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == 160) {
+                if (sb.length() == 0 || sb.charAt(sb.length() - 1) != ' ') {
+                    sb.append(' ');
+                }
+            } else if (c != 8203 && c != 173) {
+                sb.append(c);
+            }
+            i++;
+        }
+        return sb.toString().trim();
+    }
+
+    /**
+     * @return index after the tag if it is an inline start or end tag, 0 if the '<' is text, -1 if unsure
+     */
+    private static int skipInlineTag(String html, int start) {
+        int i = start + 1;
+        if (i == html.length()) {
+            return 0;
+        }
+        char c = html.charAt(i);
+        if (c == '/') {
+            i++;
+            if (i == html.length()) {
+                return 0;
+            }
+            c = html.charAt(i);
+        }
+        if (!isAsciiLetter(c)) {
+            // "<3" is text, "</3", "<!" and "<?" are comments
+            return i == start + 1 && c != '!' && c != '?' ? 0 : -1;
+        }
+        int nameStart = i;
+        while (i < html.length() && (isAsciiLetter(html.charAt(i)) || Character.isDigit(html.charAt(i)))) {
+            i++;
+        }
+        if (i == html.length() || html.charAt(i) != '>') {
+            return -1;
+        }
+        String name = html.substring(nameStart, i).toLowerCase(Locale.ENGLISH);
+        return INLINE_TAGS.contains(name) ? i + 1 : -1;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
     }
 
     /**
@@ -238,28 +276,11 @@ public class HuToolUtil {
      */
     public static Map getWordFreqMap(String text, int mode) {
         Map<String, Integer> wordMap = new HashMap<>(16);
-        StringReader reader = new StringReader(text);
-        IKSegmenter ikSegmenter;
-        if (mode == 1) {
-            ikSegmenter = new IKSegmenter(reader, true);
-        } else {
-            ikSegmenter = new IKSegmenter(reader, false);
-        }
-
-        Lexeme lexeme;
-        try {
-            while ((lexeme = ikSegmenter.next()) != null) {
-                if (lexeme.getLexemeText().length() > 1) {
-                    if (wordMap.containsKey(lexeme.getLexemeText())) {
-                        wordMap.put(lexeme.getLexemeText(), wordMap.get(lexeme.getLexemeText()) + 1);
-                    } else {
-                        wordMap.put(lexeme.getLexemeText(), 1);
-                    }
-                }
+        SegmentUtil.ik(text, mode == 1, word -> {
+            if (word.length() > 1) {
+                wordMap.merge(word, 1, Integer::sum);
             }
-        } catch (IOException ex) {
-            log.error(ex.getMessage());
-        }
+        });
 
         return wordMap;
     }
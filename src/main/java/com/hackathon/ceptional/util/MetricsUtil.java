@@ -0,0 +1,49 @@
+package com.hackathon.ceptional.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * named counters for match statistics
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+public class MetricsUtil {
+    private static final ConcurrentHashMap<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+
+    public static void increment(String name) {
+        add(name, 1);
+    }
+
+    public static void add(String name, long value) {
+        COUNTERS.computeIfAbsent(name, k -> new LongAdder()).add(value);
+    }
+
+    public static long get(String name) {
+        LongAdder counter = COUNTERS.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * @param part - counter name of the part
+     * @param total - counter name of the total
+     * @return part / total, 0 if total is 0
+     */
+    public static double ratio(String part, String total) {
+        long totalValue = get(total);
+        return totalValue == 0 ? 0 : (double) get(part) / totalValue;
+    }
+
+    /**
+     * @return all counters, sorted by name
+     */
+    public static Map<String, Long> snapshot() {
+        Map<String, Long> result = new TreeMap<>();
+        COUNTERS.forEach((k, v) -> result.put(k, v.sum()));
+        return result;
+    }
+}
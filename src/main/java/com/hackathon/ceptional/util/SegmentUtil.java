@@ -0,0 +1,119 @@
+package com.hackathon.ceptional.util;
+
+import cn.hutool.extra.tokenizer.TokenizerEngine;
+import cn.hutool.extra.tokenizer.TokenizerUtil;
+import cn.hutool.extra.tokenizer.Word;
+import cn.hutool.extra.tokenizer.engine.hanlp.HanLPEngine;
+import cn.hutool.extra.tokenizer.engine.jieba.JiebaEngine;
+import lombok.extern.slf4j.Slf4j;
+import org.wltea.analyzer.core.IKSegmenter;
+import org.wltea.analyzer.core.Lexeme;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * word segment on reusable engines, one engine per segmenter type and thread so that the 16 match threads
+ * never share an engine and never create one per call
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+@Slf4j
+public class SegmentUtil {
+    private static final String[] EMPTY = new String[0];
+
+    private static final ThreadLocal<IKSegmenter> IK_FINE =
+            ThreadLocal.withInitial(() -> new IKSegmenter(new StringReader(""), false));
+    private static final ThreadLocal<IKSegmenter> IK_SMART =
+            ThreadLocal.withInitial(() -> new IKSegmenter(new StringReader(""), true));
+    private static final ThreadLocal<TokenizerEngine> JIEBA = ThreadLocal.withInitial(JiebaEngine::new);
+    private static final ThreadLocal<TokenizerEngine> HANLP = ThreadLocal.withInitial(HanLPEngine::new);
+    private static final ThreadLocal<TokenizerEngine> CHINESE = ThreadLocal.withInitial(TokenizerUtil::createEngine);
+
+    private SegmentUtil() {
+    }
+
+    /**
+     * IK segment
+     * @param text - input text
+     * @param smart - true for smart merge mode, false for finest split
+     * @return tokens
+     */
+    public static String[] ik(String text, boolean smart) {
+        List<String> tokens = new ArrayList<>();
+        ik(text, smart, tokens::add);
+        return tokens.toArray(EMPTY);
+    }
+
+    /**
+     * IK segment, every token is passed to the consumer
+     * @param text - input text
+     * @param smart - true for smart merge mode, false for finest split
+     * @param consumer - token consumer
+     */
+    public static void ik(String text, boolean smart, Consumer<String> consumer) {
+        IKSegmenter segmenter = smart ? IK_SMART.get() : IK_FINE.get();
+        segmenter.reset(new StringReader(text));
+        try {
+            Lexeme lexeme;
+            while ((lexeme = segmenter.next()) != null) {
+                consumer.accept(lexeme.getLexemeText());
+            }
+        } catch (IOException ex) {
+            log.error(ex.getMessage());
+        }
+    }
+
+    /**
+     * jieba segment of hutool
+     */
+    public static String[] jieba(String text) {
+        return parse(JIEBA.get(), text);
+    }
+
+    /**
+     * HanLP segment of hutool
+     */
+    public static String[] hanLP(String text) {
+        return parse(HANLP.get(), text);
+    }
+
+    /**
+     * segment by the engine hutool picks from the class path
+     */
+    public static String[] chinese(String text) {
+        return parse(CHINESE.get(), text);
+    }
+
+    /**
+     * tokens of a hutool engine, same as splitting the comma joined words by comma,
+     * so that tokens stay as the segment lists before
+     */
+    private static String[] parse(TokenizerEngine engine, String text) {
+        List<String> tokens = new ArrayList<>();
+        for (Word word : engine.parse(text)) {
+            String s = word.getText();
+            int from = 0;
+            int comma;
+            while ((comma = s.indexOf(',', from)) >= 0) {
+                tokens.add(s.substring(from, comma));
+                from = comma + 1;
+            }
+            tokens.add(s.substring(from));
+        }
+        // String.split keeps the single empty string of an empty input, else drops trailing empty strings
+        if (tokens.isEmpty() || (tokens.size() == 1 && tokens.get(0).isEmpty())) {
+            return new String[]{""};
+        }
+        int size = tokens.size();
+        while (size > 0 && tokens.get(size - 1).isEmpty()) {
+            size--;
+        }
+        return tokens.subList(0, size).toArray(EMPTY);
+    }
+}
@@ -1,13 +1,8 @@
 package com.hackathon.ceptional.util;
 
-import info.debatty.java.stringsimilarity.Damerau;
-import info.debatty.java.stringsimilarity.JaroWinkler;
-import info.debatty.java.stringsimilarity.MetricLCS;
-import info.debatty.java.stringsimilarity.NGram;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
 
 /**
  * methods to calculate sentence similarity
@@ -18,67 +13,202 @@ import java.util.Set;
  */
 @Slf4j
 public class SimilarityUtil {
-    private static int min(int one, int two, int three)
+    /**
+     * levenshtein edit distance, bit-parallel (Myers / Hyyro) with the shorter string as pattern,
+     * one 64 bit word per column up to 64 characters, blocks of words beyond
+     * @param str1 - sentence 1
+     * @param str2 - sentence 2
+     * @return edit distance
+     */
+    public static int ld(String str1, String str2)
     {
-        int min = one;
-        if (two < min)
-        {
-            min = two;
+        return ld(str1, str2, Integer.MAX_VALUE - 1);
+    }
+
+    /**
+     * bounded levenshtein edit distance, stops as soon as the distance must exceed maxDistance
+     * @param str1 - sentence 1
+     * @param str2 - sentence 2
+     * @param maxDistance - distance bound
+     * @return edit distance if not more than maxDistance, else maxDistance + 1
+     */
+    public static int ld(String str1, String str2, int maxDistance)
+    {
+        String pattern = str1.length() <= str2.length() ? str1 : str2;
+        String text = pattern == str1 ? str2 : str1;
+        int m = pattern.length();
+        int n = text.length();
+        if (n - m > maxDistance) {
+            return maxDistance + 1;
         }
-        if (three < min)
-        {
-            min = three;
+        if (m == 0) {
+            return n;
+        }
+
+        PatternMasks masks = PATTERN_MASKS.get();
+        masks.init(pattern);
+        try {
+            return m <= Long.SIZE ? myers(masks, m, text, maxDistance) : blockedMyers(masks, m, text, maxDistance);
+        } finally {
+            masks.clear();
         }
-        return min;
     }
 
-    private static int ld(String str1, String str2)
+    /**
+     * single word myers, d[m][j] is tracked as score while the text is scanned
+     */
+    private static int myers(PatternMasks masks, int m, String text, int maxDistance)
     {
-        int d[][]; // 矩阵
-        int n = str1.length();
-        int m = str2.length();
-        int i; // 遍历str1的
-        int j; // 遍历str2的
-        char ch1; // str1的
-        char ch2; // str2的
-        int temp; // 记录相同字符,在某个矩阵位置值的增量,不是0就是1
-        if (n == 0)
-        {
-            return m;
+        int n = text.length();
+        long last = 1L << (m - 1);
+        long pv = -1L;
+        long mv = 0;
+        int score = m;
+        for (int j = 0; j < n; j++) {
+            long eq = masks.get(text.charAt(j), 0);
+            long xv = eq | mv;
+            long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+            if ((ph & last) != 0) {
+                score++;
+            } else if ((mh & last) != 0) {
+                score--;
+            }
+            // the remaining text could lower the score by one per character at most
+            if (score - (n - j - 1) > maxDistance) {
+                return maxDistance + 1;
+            }
+            ph = (ph << 1) | 1;
+            mh <<= 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
         }
-        if (m == 0)
-        {
-            return n;
+        return score;
+    }
+
+    /**
+     * myers over blocks of 64 pattern characters, horizontal deltas are carried from block to block
+     */
+    private static int blockedMyers(PatternMasks masks, int m, String text, int maxDistance)
+    {
+        int n = text.length();
+        int blocks = (m + Long.SIZE - 1) / Long.SIZE;
+        long[] pvs = masks.pvs;
+        long[] mvs = masks.mvs;
+        for (int b = 0; b < blocks; b++) {
+            pvs[b] = -1L;
+            mvs[b] = 0;
         }
-        d = new int[n + 1][m + 1];
-        for (i = 0; i <= n; i++)
-        { // 初始化第一列
-            d[i][0] = i;
-        }
-        for (j = 0; j <= m; j++)
-        { // 初始化第一行
-            d[0][j] = j;
-        }
-        for (i = 1; i <= n; i++)
-        { // 遍历str1
-            ch1 = str1.charAt(i - 1);
-            // 去匹配str2
-            for (j = 1; j <= m; j++)
-            {
-                ch2 = str2.charAt(j - 1);
-                if (ch1 == ch2)
-                {
-                    temp = 0;
+        long lastBlockHigh = 1L << ((m - 1) % Long.SIZE);
+        int score = m;
+        for (int j = 0; j < n; j++) {
+            char c = text.charAt(j);
+            // top row d[0][j] = j, so the carry into the first block is +1
+            int carry = 1;
+            for (int b = 0; b < blocks; b++) {
+                long pv = pvs[b];
+                long mv = mvs[b];
+                long eq = masks.get(c, b);
+                long xv = eq | mv;
+                if (carry < 0) {
+                    eq |= 1;
                 }
-                else
-                {
-                    temp = 1;
+                long xh = (((eq & pv) + pv) ^ pv) | eq;
+                long ph = mv | ~(xh | pv);
+                long mh = pv & xh;
+                long high = b == blocks - 1 ? lastBlockHigh : Long.MIN_VALUE;
+                int out = (ph & high) != 0 ? 1 : ((mh & high) != 0 ? -1 : 0);
+                ph <<= 1;
+                mh <<= 1;
+                if (carry < 0) {
+                    mh |= 1;
+                } else if (carry > 0) {
+                    ph |= 1;
+                }
+                pvs[b] = mh | ~(xv | ph);
+                mvs[b] = ph & xv;
+                carry = out;
+            }
+            score += carry;
+            if (score - (n - j - 1) > maxDistance) {
+                return maxDistance + 1;
+            }
+        }
+        return score;
+    }
+
+    /**
+     * per thread match masks of the pattern, open addressing on characters, one word per block
+     */
+    private static final ThreadLocal<PatternMasks> PATTERN_MASKS = ThreadLocal.withInitial(PatternMasks::new);
+
+    private static class PatternMasks {
+        private int[] keys = new int[128];
+        private long[] masks = new long[128];
+        private int blocks;
+        private int capacity;
+        private int[] usedSlots = new int[64];
+        private int usedCount;
+        private long[] pvs = new long[4];
+        private long[] mvs = new long[4];
+
+        private void init(String pattern) {
+            int m = pattern.length();
+            blocks = (m + Long.SIZE - 1) / Long.SIZE;
+            capacity = Integer.highestOneBit(Math.max(m, 32)) * 4;
+            if (keys.length < capacity) {
+                keys = new int[capacity];
+            }
+            if (masks.length < capacity * blocks) {
+                masks = new long[capacity * blocks];
+            }
+            if (pvs.length < blocks) {
+                pvs = new long[blocks];
+                mvs = new long[blocks];
+            }
+            if (usedSlots.length < m) {
+                usedSlots = new int[m];
+            }
+            usedCount = 0;
+            for (int i = 0; i < m; i++) {
+                int slot = slot(pattern.charAt(i), true);
+                masks[slot * blocks + i / Long.SIZE] |= 1L << (i % Long.SIZE);
+            }
+        }
+
+        private long get(char c, int block) {
+            int slot = slot(c, false);
+            return slot < 0 ? 0 : masks[slot * blocks + block];
+        }
+
+        /**
+         * slot of a character, key 0 means empty so characters are stored plus one
+         */
+        private int slot(char c, boolean insert) {
+            int key = c + 1;
+            int i = (c * 0x9E3779B9) >>> 16 & (capacity - 1);
+            while (keys[i] != 0) {
+                if (keys[i] == key) {
+                    return i;
                 }
-                // 左边+1,上边+1, 左上角+temp取最小
-                d[i][j] = min(d[i - 1][j] + 1, d[i][j - 1] + 1, d[i - 1][j - 1] + temp);
+                i = (i + 1) & (capacity - 1);
+            }
+            if (!insert) {
+                return -1;
+            }
+            keys[i] = key;
+            usedSlots[usedCount++] = i;
+            return i;
+        }
+
+        private void clear() {
+            for (int i = 0; i < usedCount; i++) {
+                int slot = usedSlots[i];
+                keys[slot] = 0;
+                Arrays.fill(masks, slot * blocks, (slot + 1) * blocks, 0);
             }
         }
-        return d[n][m];
     }
 
     /**
@@ -99,6 +229,28 @@ public class SimilarityUtil {
     }
 
 
+    /**
+     * bounded edit distance similarity, 1 - ld / max length
+     * @param str1 - sentence 1
+     * @param str2 - sentence 2
+     * @param minSim - similarity floor
+     * @return similarity if it reaches minSim, else an upper bound of it which is below minSim
+     */
+    public static double sim(String str1, String str2, double minSim)
+    {
+        int maxLen = Math.max(str1.length(), str2.length());
+        if (maxLen == 0) {
+            return 1;
+        }
+        // largest distance still reaching minSim
+        int maxDistance = (int) Math.floor((1 - minSim) * maxLen + 1e-9);
+        if (maxDistance < 0) {
+            return 0;
+        }
+        int ld = ld(str1, str2, maxDistance);
+        return 1 - (double) ld / maxLen;
+    }
+
     /**
      * jac card算法计算两个string相似度
      * @param str1 - sentence 1
@@ -106,76 +258,385 @@ public class SimilarityUtil {
      * @return similarity result
      */
     public static double jacCardSimilarity(String str1, String str2){
-        //set元素不可重复
-        Set<Character> s1 = new HashSet<>();
-        Set<Character> s2 = new HashSet<>();
+        // sorted distinct characters merged, instead of boxed character sets and a nested loop
+        return CharSignature.of(str1).jaccard(CharSignature.of(str2));
+    }
 
-        for (int i = 0; i < str1.length(); i++) {
-            s1.add(str1.charAt(i));
+    /**
+     * Damerau算法计算两个string相似度, same result as debatty Damerau distance, no garbage per call
+     * @param str1 - sentence 1
+     * @param str2 - sentence 2
+     * @return similarity result
+     */
+    public static double damerauSimilarity(String str1, String str2) {
+        if (str1.equals(str2)) {
+            return 0.0;
         }
-        for (int j = 0; j < str2.length(); j++) {
-            s2.add(str2.charAt(j));
+        int n = str1.length();
+        int m = str2.length();
+        int inf = n + m;
+        Arena arena = ARENA.get();
+        // da - last row of each character in str1, 0 if not seen yet
+        CharMap da = arena.charMap(n + m);
+        for (int i = 0; i < n; i++) {
+            da.put(str1.charAt(i), 0);
         }
-
-        // 并集元素个数
-        float mergeNum = 0;
-        // 相同元素个数（交集）
-        float commonNum = 0;
-
-        for(Character ch1:s1) {
-            for(Character ch2:s2) {
-                if(ch1.equals(ch2)) {
-                    commonNum++;
+        for (int j = 0; j < m; j++) {
+            da.put(str2.charAt(j), 0);
+        }
+        // h[i][j] at i * w + j
+        int w = m + 2;
+        int[] h = arena.matrix((n + 2) * w);
+        for (int i = 0; i <= n; i++) {
+            h[(i + 1) * w] = inf;
+            h[(i + 1) * w + 1] = i;
+        }
+        for (int j = 0; j <= m; j++) {
+            h[j + 1] = inf;
+            h[w + j + 1] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            int db = 0;
+            char c1 = str1.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                int i1 = da.get(str2.charAt(j - 1));
+                int j1 = db;
+                int cost = 1;
+                if (c1 == str2.charAt(j - 1)) {
+                    cost = 0;
+                    db = j;
                 }
+                int value = Math.min(h[i * w + j] + cost, Math.min(h[(i + 1) * w + j] + 1,
+                        Math.min(h[i * w + j + 1] + 1, h[i1 * w + j1] + (i - i1 - 1) + 1 + (j - j1 - 1))));
+                h[(i + 1) * w + j + 1] = value;
             }
+            da.put(c1, i);
         }
-
-        mergeNum = s1.size()+s2.size()-commonNum;
-
-        return commonNum/mergeNum;
+        return h[(n + 1) * w + m + 1];
     }
 
     /**
-     * Damerau算法计算两个string相似度
-     * @param str1 - sentence 1
-     * @param str2 - sentence 2
-     * @return similarity result
+     * jaroSimilarity upper bound from lengths, every character of the shorter text matched in order
+     * and the winkler prefix as long as the shorter text
+     * @param len1 - length of sentence 1
+     * @param len2 - length of sentence 2
+     * @return upper bound of jaroSimilarity
      */
-    public static double damerauSimilarity(String str1, String str2) {
-        Damerau d = new Damerau();
-        return d.distance(str1, str2);
+    public static double jaroUpperBound(int len1, int len2) {
+        int minLen = Math.min(len1, len2);
+        int maxLen = Math.max(len1, len2);
+        if (minLen == 0) {
+            return len1 == len2 ? 1 : 0;
+        }
+        double j = ((double) minLen / len1 + (double) minLen / len2 + 1) / 3;
+        if (j > JW_THRESHOLD) {
+            j += Math.min(JW_COEF, 1.0 / maxLen) * minLen * (1 - j);
+        }
+        return j;
     }
 
     /**
-     * Jaro算法计算两个string相似度
+     * Jaro算法计算两个string相似度, same result as debatty JaroWinkler similarity, no garbage per call
      * @param str1 - sentence 1
      * @param str2 - sentence 2
      * @return similarity result
      */
     public static double jaroSimilarity(String str1, String str2) {
-        JaroWinkler jw = new JaroWinkler();
-        return jw.similarity(str1, str2);
+        if (str1.equals(str2)) {
+            return 1.0;
+        }
+        String max = str1.length() > str2.length() ? str1 : str2;
+        String min = max == str1 ? str2 : str1;
+        int range = Math.max(max.length() / 2 - 1, 0);
+        Arena arena = ARENA.get();
+        boolean[] minFlags = arena.minFlags(min.length());
+        boolean[] maxFlags = arena.maxFlags(max.length());
+        int matches = 0;
+        for (int mi = 0; mi < min.length(); mi++) {
+            char c1 = min.charAt(mi);
+            int xn = Math.min(mi + range + 1, max.length());
+            for (int xi = Math.max(mi - range, 0); xi < xn; xi++) {
+                if (!maxFlags[xi] && c1 == max.charAt(xi)) {
+                    minFlags[mi] = true;
+                    maxFlags[xi] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+
+        // matched characters of both strings in order, compared pairwise
+        int transpositions = 0;
+        int xi = 0;
+        for (int mi = 0; mi < min.length(); mi++) {
+            if (minFlags[mi]) {
+                while (!maxFlags[xi]) {
+                    xi++;
+                }
+                if (min.charAt(mi) != max.charAt(xi)) {
+                    transpositions++;
+                }
+                xi++;
+            }
+        }
+        Arrays.fill(minFlags, 0, min.length(), false);
+        Arrays.fill(maxFlags, 0, max.length(), false);
+
+        int prefix = 0;
+        for (int mi = 0; mi < min.length() && str1.charAt(mi) == str2.charAt(mi); mi++) {
+            prefix++;
+        }
+
+        // float arithmetic as debatty does
+        float m = matches;
+        if (m == 0.0f) {
+            return 0.0;
+        }
+        double j = (m / (float) str1.length() + m / (float) str2.length() + (m - (float) (transpositions / 2)) / m)
+                / 3.0f;
+        double jw = j;
+        if (j > JW_THRESHOLD) {
+            jw = j + Math.min(JW_COEF, 1.0 / max.length()) * prefix * (1.0 - j);
+        }
+        return jw;
     }
 
     /**
-     * 度量最长公共子序列算法计算两个string相似度
+     * 度量最长公共子序列算法计算两个string相似度, same result as debatty MetricLCS distance, no garbage per call
      * @param str1 - sentence 1
      * @param str2 - sentence 2
      * @return similarity result
      */
     public static double metricLcsSimilarity(String str1, String str2) {
-        MetricLCS lcs = new MetricLCS();
-        return lcs.distance(str1, str2);
+        if (str1.equals(str2)) {
+            return 0.0;
+        }
+        int n = str1.length();
+        int m = str2.length();
+        int maxLen = Math.max(n, m);
+        if (maxLen == 0) {
+            return 0.0;
+        }
+        // two rows of the lcs table
+        Arena arena = ARENA.get();
+        int[] prev = arena.row(0, m + 1);
+        int[] curr = arena.row(1, m + 1);
+        Arrays.fill(prev, 0, m + 1, 0);
+        curr[0] = 0;
+        for (int i = 1; i <= n; i++) {
+            char c1 = str1.charAt(i - 1);
+            for (int j = 1; j <= m; j++) {
+                curr[j] = c1 == str2.charAt(j - 1) ? prev[j - 1] + 1 : Math.max(curr[j - 1], prev[j]);
+            }
+            int[] t = prev;
+            prev = curr;
+            curr = t;
+        }
+        return 1.0 - 1.0 * prev[m] / maxLen;
     }
 
     /**
-     * nGram算法计算两个string相似度
+     * nGram算法计算两个string相似度, same result as debatty NGram (n = 2) distance, no garbage per call
      * @param str1 - sentence 1
      * @param str2 - sentence 2
      * @return similarity result
      */
     public static double nGramSimilarity(String str1, String str2) {
-        NGram ngram = new NGram();
-        return ngram.distance(str1, str2);
+        if (str1.equals(str2)) {
+            return 0.0;
+        }
+        int sl = str1.length();
+        int tl = str2.length();
+        if (sl == 0 || tl == 0) {
+            return 1.0;
+        }
+        int cost = 0;
+        if (sl < NGRAM || tl < NGRAM) {
+            int ni = Math.min(sl, tl);
+            for (int i = 0; i < ni; i++) {
+                if (str1.charAt(i) == str2.charAt(i)) {
+                    cost++;
+                }
+            }
+            return (float) cost / (float) Math.max(sl, tl);
+        }
+
+        // str1 padded in front with n - 1 special characters
+        Arena arena = ARENA.get();
+        char[] sa = arena.chars(sl + NGRAM - 1);
+        for (int i = 0; i < sl + NGRAM - 1; i++) {
+            sa[i] = i < NGRAM - 1 ? NGRAM_SPECIAL : str1.charAt(i - NGRAM + 1);
+        }
+        float[] p = arena.floatRow(0, sl + 1);
+        float[] d = arena.floatRow(1, sl + 1);
+        for (int i = 0; i <= sl; i++) {
+            p[i] = i;
+        }
+        for (int j = 1; j <= tl; j++) {
+            // the n-gram of str2 ending at j, padded the same way
+            char t0 = j < NGRAM ? NGRAM_SPECIAL : str2.charAt(j - 2);
+            char t1 = str2.charAt(j - 1);
+            d[0] = j;
+            for (int i = 1; i <= sl; i++) {
+                cost = 0;
+                int tn = NGRAM;
+                if (sa[i - 1] != t0) {
+                    cost++;
+                } else if (sa[i - 1] == NGRAM_SPECIAL) {
+                    tn--;
+                }
+                if (sa[i] != t1) {
+                    cost++;
+                } else if (sa[i] == NGRAM_SPECIAL) {
+                    tn--;
+                }
+                float ec = (float) cost / (float) tn;
+                d[i] = Math.min(Math.min(d[i - 1] + 1.0f, p[i] + 1.0f), p[i - 1] + ec);
+            }
+            float[] t = p;
+            p = d;
+            d = t;
+        }
+        return p[sl] / (float) Math.max(tl, sl);
+    }
+
+    private static final double JW_THRESHOLD = 0.7;
+    private static final double JW_COEF = 0.1;
+    private static final int NGRAM = 2;
+    private static final char NGRAM_SPECIAL = '\n';
+
+    /**
+     * initial arena text length, set to the longest faq so that arenas do not grow on the hot path
+     */
+    private static volatile int arenaLength = 64;
+
+    /**
+     * size thread scratch arenas for texts up to the given length, arenas grow on demand beyond it
+     * @param maxLength - longest text length expected
+     */
+    public static void reserve(int maxLength) {
+        arenaLength = Math.max(arenaLength, maxLength);
+    }
+
+    /**
+     * per thread scratch buffers of the similarity kernels
+     */
+    private static final ThreadLocal<Arena> ARENA = ThreadLocal.withInitial(() -> new Arena(arenaLength));
+
+    private static class Arena {
+        private boolean[] minFlags;
+        private boolean[] maxFlags;
+        private int[] matrix;
+        private final int[][] rows = new int[2][];
+        private final float[][] floatRows = new float[2][];
+        private char[] chars;
+        private final CharMap charMap;
+
+        private Arena(int length) {
+            // longest text against a question of the same length
+            int size = length + 2;
+            minFlags = new boolean[size];
+            maxFlags = new boolean[size];
+            matrix = new int[size * size];
+            rows[0] = new int[size];
+            rows[1] = new int[size];
+            floatRows[0] = new float[size];
+            floatRows[1] = new float[size];
+            chars = new char[size];
+            charMap = new CharMap(size * 2);
+        }
+
+        private boolean[] minFlags(int size) {
+            if (minFlags.length < size) {
+                minFlags = new boolean[size];
+            }
+            return minFlags;
+        }
+
+        private boolean[] maxFlags(int size) {
+            if (maxFlags.length < size) {
+                maxFlags = new boolean[size];
+            }
+            return maxFlags;
+        }
+
+        private int[] matrix(int size) {
+            if (matrix.length < size) {
+                matrix = new int[size];
+            }
+            return matrix;
+        }
+
+        private int[] row(int index, int size) {
+            if (rows[index].length < size) {
+                rows[index] = new int[size];
+            }
+            return rows[index];
+        }
+
+        private float[] floatRow(int index, int size) {
+            if (floatRows[index].length < size) {
+                floatRows[index] = new float[size];
+            }
+            return floatRows[index];
+        }
+
+        private char[] chars(int size) {
+            if (chars.length < size) {
+                chars = new char[size];
+            }
+            return chars;
+        }
+
+        /**
+         * emptied char map for up to count distinct characters
+         */
+        private CharMap charMap(int count) {
+            charMap.reset(count);
+            return charMap;
+        }
+    }
+
+    /**
+     * char to int open addressing map, key 0 means empty so characters are stored plus one
+     */
+    private static class CharMap {
+        private int[] keys;
+        private int[] values;
+        private int capacity;
+
+        private CharMap(int count) {
+            keys = new int[Integer.highestOneBit(Math.max(count, 16)) * 4];
+            values = new int[keys.length];
+        }
+
+        private void reset(int count) {
+            Arrays.fill(keys, 0, capacity, 0);
+            capacity = Integer.highestOneBit(Math.max(count, 16)) * 4;
+            if (keys.length < capacity) {
+                keys = new int[capacity];
+                values = new int[capacity];
+            }
+        }
+
+        private void put(char c, int value) {
+            int i = slot(c);
+            keys[i] = c + 1;
+            values[i] = value;
+        }
+
+        private int get(char c) {
+            int i = slot(c);
+            return keys[i] == 0 ? 0 : values[i];
+        }
+
+        private int slot(char c) {
+            int key = c + 1;
+            int i = (c * 0x9E3779B9) >>> 16 & (capacity - 1);
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & (capacity - 1);
+            }
+            return i;
+        }
     }
 }
@@ -0,0 +1,138 @@
+package com.hackathon.ceptional.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * sparse term vector, sorted distinct term ids with their weights and the squared norm
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+public final class SparseTermVector {
+    private static final SparseTermVector EMPTY = new SparseTermVector(new int[0], new float[0], 0);
+
+    private final int[] ids;
+    private final float[] weights;
+    private final double squaredNorm;
+
+    private SparseTermVector(int[] ids, float[] weights, double squaredNorm) {
+        this.ids = ids;
+        this.weights = weights;
+        this.squaredNorm = squaredNorm;
+    }
+
+    /**
+     * vector of a faq, every term is added to the dictionary
+     * @param terms - segmented terms, null terms are skipped
+     * @param dictionary - term dictionary
+     * @return vector with weight 1 for each distinct term
+     */
+    public static SparseTermVector of(List<String> terms, TermDictionary dictionary) {
+        if (terms == null || terms.isEmpty()) {
+            return EMPTY;
+        }
+        int[] ids = new int[terms.size()];
+        int count = 0;
+        for (String term : terms) {
+            if (term != null) {
+                ids[count++] = dictionary.add(term);
+            }
+        }
+        return build(ids, count);
+    }
+
+    /**
+     * vector of a query, terms not in the dictionary get local negative ids,
+     * they can not match any faq but still count in the norm
+     * @param terms - segmented terms, null terms are skipped
+     * @param dictionary - term dictionary
+     * @return vector with weight 1 for each distinct term
+     */
+    public static SparseTermVector lookup(List<String> terms, TermDictionary dictionary) {
+        if (terms == null || terms.isEmpty()) {
+            return EMPTY;
+        }
+        int[] ids = new int[terms.size()];
+        int count = 0;
+        Map<String, Integer> unknown = null;
+        for (String term : terms) {
+            if (term == null) {
+                continue;
+            }
+            int id = dictionary.lookup(term);
+            if (id < 0) {
+                if (unknown == null) {
+                    unknown = new HashMap<>(8);
+                }
+                Integer local = unknown.get(term);
+                if (local == null) {
+                    local = -1 - unknown.size();
+                    unknown.put(term, local);
+                }
+                id = local;
+            }
+            ids[count++] = id;
+        }
+        return build(ids, count);
+    }
+
+    private static SparseTermVector build(int[] ids, int count) {
+        Arrays.sort(ids, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        float[] weights = new float[distinct];
+        Arrays.fill(weights, 1f);
+        return new SparseTermVector(Arrays.copyOf(ids, distinct), weights, distinct);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * cosine over the union of terms, a term missing on one side weighs threshold times its weight on the other
+     * side, one merge of the sorted ids
+     * @param other - other vector
+     * @param threshold - weight ratio of missing terms
+     * @return cosine similarity, 0 if either vector is empty
+     */
+    public double cosine(SparseTermVector other, double threshold) {
+        if (ids.length == 0 || other.ids.length == 0) {
+            return 0;
+        }
+        int[] a = ids;
+        int[] b = other.ids;
+        int i = 0;
+        int j = 0;
+        double common = 0;
+        double commonA = 0;
+        double commonB = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                double wa = weights[i++];
+                double wb = other.weights[j++];
+                common += wa * wb;
+                commonA += wa * wa;
+                commonB += wb * wb;
+            }
+        }
+        double onlyA = squaredNorm - commonA;
+        double onlyB = other.squaredNorm - commonB;
+        double dot = common + threshold * (onlyA + onlyB);
+        double sOne = squaredNorm + threshold * threshold * onlyB;
+        double sTwo = other.squaredNorm + threshold * threshold * onlyA;
+        return dot / Math.sqrt(sOne * sTwo);
+    }
+}
@@ -0,0 +1,46 @@
+package com.hackathon.ceptional.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * dictionary from segmented term to int id, ids are assigned in order from 0
+ *
+ * faq terms are added at init, query terms are only looked up so that traffic does not grow the dictionary
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+public class TermDictionary {
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * id of a term, assigned if absent, thread safe
+     */
+    public int add(String term) {
+        return ids.computeIfAbsent(term, t -> nextId.getAndIncrement());
+    }
+
+    /**
+     * @return id of a term, -1 if absent
+     */
+    public int lookup(String term) {
+        Integer id = ids.get(term);
+        return id == null ? -1 : id;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * @return terms by id, should not be called while terms are being added
+     */
+    public String[] terms() {
+        String[] terms = new String[nextId.get()];
+        ids.forEach((term, id) -> terms[id] = term);
+        return terms;
+    }
+}
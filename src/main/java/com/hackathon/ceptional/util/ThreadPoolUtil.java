@@ -2,6 +2,7 @@ package com.hackathon.ceptional.util;
 
 import com.hackathon.ceptional.config.Constants;
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 
@@ -19,7 +20,16 @@ public class ThreadPoolUtil {
     private static final ScheduledExecutorService SCHEDULER = new ScheduledThreadPoolExecutor(Constants.THREAD_COUNT,
             new BasicThreadFactory.Builder().namingPattern("schedule-pool-%02d").daemon(true).build());
 
+    /**
+     * fork join pool for bulk computations split into subtasks
+     */
+    private static final ForkJoinPool FORK_JOIN_POOL = new ForkJoinPool(Constants.THREAD_COUNT);
+
     public static void executeMultiThread(Runnable runnable) {
         SCHEDULER.execute(runnable);
     }
+
+    public static ForkJoinPool forkJoinPool() {
+        return FORK_JOIN_POOL;
+    }
 }
@@ -0,0 +1,430 @@
+package com.hackathon.ceptional;
+
+import com.hackathon.ceptional.index.BkTreeIndex;
+import com.hackathon.ceptional.index.Bm25Index;
+import com.hackathon.ceptional.index.FloatVectorStore;
+import com.hackathon.ceptional.index.HnswIndex;
+import com.hackathon.ceptional.index.MinHashIndex;
+import com.hackathon.ceptional.index.NGramVectorizer;
+import com.hackathon.ceptional.index.PqVectorStore;
+import com.hackathon.ceptional.index.QGramIndex;
+import com.hackathon.ceptional.index.SimHashIndex;
+import com.hackathon.ceptional.index.SymSpellIndex;
+import com.hackathon.ceptional.index.TopK;
+import com.hackathon.ceptional.index.VectorStore;
+import com.hackathon.ceptional.util.SimilarityUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.*;
+
+/**
+ * test methods for retrieval indexes
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+@SpringBootTest
+class IndexTest {
+    private double avgLen;
+    private final Map<String, Integer> docFreq = new HashMap<>();
+
+    @Test
+    void testBm25MaxScore() {
+        Random random = new Random(7);
+        int docCount = 5000;
+        List<Map<String, Integer>> docs = new ArrayList<>();
+        Bm25Index index = new Bm25Index();
+        for (int i = 0; i < docCount; i++) {
+            Map<String, Integer> doc = new HashMap<>(16);
+            int len = 3 + random.nextInt(8);
+            for (int j = 0; j < len; j++) {
+                // skewed vocabulary, so that some terms are frequent
+                doc.merge("t" + (int) Math.pow(random.nextInt(40), 2), 1, Integer::sum);
+            }
+            docs.add(doc);
+            index.add(doc);
+        }
+        index.build();
+
+        for (int q = 0; q < 50; q++) {
+            Set<String> terms = new HashSet<>();
+            for (int j = 0; j < 4; j++) {
+                terms.add("t" + (int) Math.pow(random.nextInt(40), 2));
+            }
+            double[] expected = bruteForce(docs, terms);
+            List<Integer> ids = index.search(terms, 10);
+            Assertions.assertEquals(10, ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                Assertions.assertEquals(expected[i], bm25(docs, terms, ids.get(i)), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void testQGramFilter() {
+        Random random = new Random(11);
+        List<String> texts = randomTexts(random, 3000);
+        for (int q = 1; q <= 3; q++) {
+            QGramIndex index = new QGramIndex(q);
+            texts.forEach(index::add);
+            int total = 0;
+            for (int i = 0; i < 30; i++) {
+                String query = texts.get(random.nextInt(texts.size()));
+                query = query.substring(0, query.length() / 2) + "票" + query.substring(query.length() / 2);
+                Set<Integer> ids = new HashSet<>(index.search(query, 0.6, texts.size()));
+                for (int id = 0; id < texts.size(); id++) {
+                    // no false dismissal
+                    if (SimilarityUtil.sim(query, texts.get(id)) >= 0.6) {
+                        Assertions.assertTrue(ids.contains(id));
+                    }
+                }
+                total += ids.size();
+            }
+            System.out.println("q-gram size: " + q + ", avg candidates: " + total / 30 + " of " + texts.size());
+            if (q <= 2) {
+                Assertions.assertTrue(total / 30 < texts.size() / 10);
+            }
+        }
+    }
+
+    /**
+     * recall and latency curve, corpus sizes could be set by -Dindex.bench.sizes=10000,100000,1000000
+     */
+    @Test
+    void testMinHashRecallCurve() {
+        int[][] configs = {{8, 4}, {16, 4}, {32, 4}, {16, 2}};
+        for (String sizeStr : System.getProperty("index.bench.sizes", "10000").split(",")) {
+            int size = Integer.parseInt(sizeStr.trim());
+            Random random = new Random(size);
+            List<String> texts = randomTexts(random, size);
+            List<String> queries = typoQueries(random, texts, 50);
+
+            // ground truth by brute force, jaccard not less than 0.6
+            List<Set<Integer>> truth = new ArrayList<>();
+            long begin = System.nanoTime();
+            for (String query : queries) {
+                Set<Integer> ids = new HashSet<>();
+                for (int id = 0; id < texts.size(); id++) {
+                    if (SimilarityUtil.jacCardSimilarity(query, texts.get(id)) >= 0.6) {
+                        ids.add(id);
+                    }
+                }
+                truth.add(ids);
+            }
+            long bruteUs = (System.nanoTime() - begin) / 1000 / queries.size();
+
+            for (int[] config : configs) {
+                MinHashIndex index = new MinHashIndex(config[0], config[1], 1);
+                texts.forEach(index::add);
+                index.build();
+                int found = 0;
+                int total = 0;
+                int candidates = 0;
+                begin = System.nanoTime();
+                for (int i = 0; i < queries.size(); i++) {
+                    List<Integer> ids = index.search(queries.get(i), size);
+                    candidates += ids.size();
+                    Set<Integer> idSet = new HashSet<>(ids);
+                    for (Integer id : truth.get(i)) {
+                        found += idSet.contains(id) ? 1 : 0;
+                    }
+                    total += truth.get(i).size();
+                }
+                long searchUs = (System.nanoTime() - begin) / 1000 / queries.size();
+                double recall = (double) found / total;
+                System.out.println("minhash corpus: " + size + ", bands: " + config[0] + ", rows: " + config[1]
+                        + ", recall: " + recall + ", avg candidates: " + candidates / queries.size()
+                        + ", avg us: " + searchUs + ", brute force avg us: " + bruteUs);
+                if (config[0] == 16 && config[1] == 4) {
+                    Assertions.assertTrue(recall > 0.9);
+                }
+            }
+        }
+    }
+
+    /**
+     * recall@10 and latency against exact cosine scan, corpus sizes could be set by -Dindex.bench.sizes=100000,1000000
+     */
+    @Test
+    void testHnswRecallCurve() {
+        NGramVectorizer vectorizer = new NGramVectorizer(256, 2);
+        for (String sizeStr : System.getProperty("index.bench.sizes", "10000").split(",")) {
+            int size = Integer.parseInt(sizeStr.trim());
+            Random random = new Random(size);
+            List<String> texts = randomTexts(random, size);
+            List<float[]> vectors = new ArrayList<>(size);
+            long begin = System.nanoTime();
+            HnswIndex index = new HnswIndex(16, 100, 64);
+            for (String text : texts) {
+                float[] v = vectorizer.vector(text);
+                vectors.add(v);
+                index.add(v);
+            }
+            long buildMs = (System.nanoTime() - begin) / 1000000;
+            List<String> queries = typoQueries(random, texts, 50);
+
+            List<Set<Integer>> truth = new ArrayList<>();
+            List<Integer> nearest = new ArrayList<>();
+            begin = System.nanoTime();
+            for (String query : queries) {
+                float[] q = vectorizer.vector(query);
+                TopK topK = new TopK(10);
+                for (int id = 0; id < size; id++) {
+                    topK.offer(id, NGramVectorizer.dot(q, vectors.get(id)));
+                }
+                nearest.add(topK.ids().get(0));
+                truth.add(new HashSet<>(topK.ids()));
+            }
+            long bruteUs = (System.nanoTime() - begin) / 1000 / queries.size();
+
+            for (int ef : new int[]{16, 64, 128}) {
+                int found = 0;
+                int nearestFound = 0;
+                begin = System.nanoTime();
+                for (int i = 0; i < queries.size(); i++) {
+                    List<Integer> ids = index.search(vectorizer.vector(queries.get(i)), 10, ef);
+                    for (Integer id : ids) {
+                        found += truth.get(i).contains(id) ? 1 : 0;
+                    }
+                    nearestFound += ids.contains(nearest.get(i)) ? 1 : 0;
+                }
+                long searchUs = (System.nanoTime() - begin) / 1000 / queries.size();
+                double recall = (double) found / (10 * queries.size());
+                double nearestRecall = (double) nearestFound / queries.size();
+                System.out.println("hnsw corpus: " + size + ", build ms: " + buildMs + ", efSearch: " + ef
+                        + ", recall@10: " + recall + ", nearest found: " + nearestRecall + ", avg us: " + searchUs
+                        + ", brute force avg us: " + bruteUs);
+                if (ef == 64) {
+                    Assertions.assertTrue(nearestRecall > 0.9);
+                }
+            }
+        }
+    }
+
+    /**
+     * memory per entry, scan throughput and recall@10 of pq store with and without exact re-rank,
+     * corpus sizes could be set by -Dindex.bench.sizes=100000,1000000
+     */
+    @Test
+    void testVectorStore() {
+        NGramVectorizer vectorizer = new NGramVectorizer(256, 2);
+        for (String sizeStr : System.getProperty("index.bench.sizes", "10000").split(",")) {
+            int size = Integer.parseInt(sizeStr.trim());
+            Random random = new Random(size);
+            List<String> texts = randomTexts(random, size);
+            List<String> queries = typoQueries(random, texts, 50);
+            FloatVectorStore floatStore = new FloatVectorStore(256);
+            List<float[]> sample = new ArrayList<>();
+            for (int id = 0; id < size; id++) {
+                float[] v = vectorizer.vector(texts.get(id));
+                floatStore.add(v);
+                if (id % Math.max(1, size / 20000) == 0) {
+                    sample.add(v);
+                }
+            }
+            PqVectorStore pqStore = new PqVectorStore(256, 32);
+            pqStore.train(sample);
+            for (String text : texts) {
+                pqStore.add(vectorizer.vector(text));
+            }
+
+            List<Set<Integer>> truth = new ArrayList<>();
+            long floatNs = scan(floatStore, vectorizer, queries, 10, truth);
+            List<Set<Integer>> pqTop = new ArrayList<>();
+            long pqNs = scan(pqStore, vectorizer, queries, 10, pqTop);
+            List<Set<Integer>> pqCandidates = new ArrayList<>();
+            scan(pqStore, vectorizer, queries, 200, pqCandidates);
+
+            int found = 0;
+            int reranked = 0;
+            for (int i = 0; i < queries.size(); i++) {
+                float[] q = vectorizer.vector(queries.get(i));
+                TopK topK = new TopK(10);
+                for (Integer id : pqCandidates.get(i)) {
+                    topK.offer(id, NGramVectorizer.dot(q, vectorizer.vector(texts.get(id))));
+                }
+                for (Integer id : truth.get(i)) {
+                    found += pqTop.get(i).contains(id) ? 1 : 0;
+                    reranked += topK.ids().contains(id) ? 1 : 0;
+                }
+            }
+            double recall = (double) found / (10 * queries.size());
+            double rerankRecall = (double) reranked / (10 * queries.size());
+            long entries = (long) size * queries.size();
+            System.out.println("vector store corpus: " + size
+                    + ", float bytes/entry: " + floatStore.bytesPerEntry()
+                    + ", entries/s: " + entries * 1000000000L / floatNs
+                    + "; pq bytes/entry: " + pqStore.bytesPerEntry()
+                    + ", entries/s: " + entries * 1000000000L / pqNs
+                    + ", recall@10: " + recall + ", re-ranked top 200 recall@10: " + rerankRecall);
+            Assertions.assertTrue(rerankRecall > 0.9);
+        }
+    }
+
+    @Test
+    void testSimHashLookup() {
+        Random random = new Random(13);
+        List<String> texts = randomTexts(random, 20000);
+        SimHashIndex index = new SimHashIndex(6);
+        texts.forEach(index::add);
+        index.build();
+
+        int sourceFound = 0;
+        List<String> queries = typoQueries(random, texts, 200);
+        for (String query : queries) {
+            long fp = SimHashIndex.fingerprint(query);
+            Set<Integer> expected = new HashSet<>();
+            for (int id = 0; id < texts.size(); id++) {
+                if (Long.bitCount(fp ^ SimHashIndex.fingerprint(texts.get(id))) <= 6) {
+                    expected.add(id);
+                }
+            }
+            List<Integer> ids = index.search(query);
+            Assertions.assertEquals(expected, new HashSet<>(ids));
+            // the text the query was made from is one edit away
+            sourceFound += ids.stream().anyMatch(id ->
+                    SimilarityUtil.sim(query, texts.get(id)) >= 1 - 1.0 / query.length() - 1e-9) ? 1 : 0;
+        }
+        System.out.println("simhash one typo source found: " + sourceFound + " of " + queries.size());
+    }
+
+    @Test
+    void testSymSpellLookup() {
+        Random random = new Random(17);
+        List<String> texts = randomTexts(random, 5000);
+        SymSpellIndex index = new SymSpellIndex(2, 10);
+        texts.forEach(index::add);
+        index.build();
+
+        for (int i = 0; i < 200; i++) {
+            // one or two random insert, delete or replace edits
+            StringBuilder query = new StringBuilder(texts.get(random.nextInt(texts.size())));
+            for (int edit = random.nextInt(2); edit < 2; edit++) {
+                int pos = random.nextInt(query.length());
+                int op = random.nextInt(3);
+                if (op == 0) {
+                    query.insert(pos, (char) (0x4E00 + random.nextInt(500)));
+                } else if (op == 1 && query.length() > 1) {
+                    query.deleteCharAt(pos);
+                } else {
+                    query.setCharAt(pos, (char) (0x4E00 + random.nextInt(500)));
+                }
+            }
+            Set<Integer> expected = new HashSet<>();
+            for (int id = 0; id < texts.size(); id++) {
+                if (SimilarityUtil.ld(query.toString(), texts.get(id)) <= 2) {
+                    expected.add(id);
+                }
+            }
+            List<Integer> ids = index.search(query.toString());
+            Assertions.assertFalse(expected.isEmpty());
+            Assertions.assertEquals(expected, new HashSet<>(ids));
+        }
+    }
+
+    @Test
+    void testBkTreeRadius() {
+        Random random = new Random(19);
+        List<String> texts = randomTexts(random, 5000);
+        BkTreeIndex index = new BkTreeIndex();
+        texts.forEach(index::add);
+
+        long elapsed = 0;
+        for (String query : typoQueries(random, texts, 200)) {
+            for (int radius = 0; radius <= 2; radius++) {
+                Set<Integer> expected = new HashSet<>();
+                for (int id = 0; id < texts.size(); id++) {
+                    if (SimilarityUtil.ld(query, texts.get(id)) <= radius) {
+                        expected.add(id);
+                    }
+                }
+                long start = System.nanoTime();
+                List<Integer> ids = index.search(query, radius);
+                elapsed += System.nanoTime() - start;
+                Assertions.assertEquals(expected, new HashSet<>(ids));
+                for (int i = 1; i < ids.size(); i++) {
+                    Assertions.assertTrue(SimilarityUtil.ld(query, texts.get(ids.get(i - 1)))
+                            <= SimilarityUtil.ld(query, texts.get(ids.get(i))));
+                }
+            }
+        }
+        System.out.println("bk-tree radius search, 600 queries, ms: " + elapsed / 1000000);
+    }
+
+    /**
+     * top k of each query by store scan
+     * @return total scan nanos
+     */
+    private long scan(VectorStore store, NGramVectorizer vectorizer, List<String> queries, int k,
+                      List<Set<Integer>> result) {
+        long elapsed = 0;
+        for (String query : queries) {
+            float[] q = vectorizer.vector(query);
+            long begin = System.nanoTime();
+            List<Integer> ids = store.search(q, k);
+            elapsed += System.nanoTime() - begin;
+            result.add(new HashSet<>(ids));
+        }
+        return elapsed;
+    }
+
+    /**
+     * corpus texts with one character replaced
+     */
+    private List<String> typoQueries(Random random, List<String> texts, int count) {
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String text = texts.get(random.nextInt(texts.size()));
+            int pos = random.nextInt(text.length());
+            queries.add(text.substring(0, pos) + (char) (0x4E00 + random.nextInt(500)) + text.substring(pos + 1));
+        }
+        return queries;
+    }
+
+    private List<String> randomTexts(Random random, int count) {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder();
+            int len = 4 + random.nextInt(12);
+            for (int j = 0; j < len; j++) {
+                // common cjk characters
+                sb.append((char) (0x4E00 + random.nextInt(500)));
+            }
+            texts.add(sb.toString());
+        }
+        return texts;
+    }
+
+    private double[] bruteForce(List<Map<String, Integer>> docs, Set<String> terms) {
+        double[] scores = new double[docs.size()];
+        for (int id = 0; id < docs.size(); id++) {
+            scores[id] = -bm25(docs, terms, id);
+        }
+        Arrays.sort(scores);
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = -scores[i];
+        }
+        return scores;
+    }
+
+    private double bm25(List<Map<String, Integer>> docs, Set<String> terms, int id) {
+        if (avgLen == 0) {
+            avgLen = docs.stream().mapToInt(d -> d.values().stream().mapToInt(x -> x).sum()).average().orElse(1);
+            docs.forEach(d -> d.keySet().forEach(t -> docFreq.merge(t, 1, Integer::sum)));
+        }
+        int len = docs.get(id).values().stream().mapToInt(x -> x).sum();
+        double score = 0;
+        for (String term : terms) {
+            Integer tf = docs.get(id).get(term);
+            if (tf != null) {
+                int df = docFreq.get(term);
+                double idf = Math.log(1 + (docs.size() - df + 0.5) / (df + 0.5));
+                score += idf * tf * 2.2 / (tf + 1.2 * (0.25 + 0.75 * len / avgLen));
+            }
+        }
+        return score;
+    }
+}
@@ -0,0 +1,195 @@
+package com.hackathon.ceptional;
+
+import com.hackathon.ceptional.model.ResultModel;
+import com.hackathon.ceptional.service.FaqDataService;
+import com.hackathon.ceptional.service.FaqMatchService;
+import com.hackathon.ceptional.service.HttpService;
+import com.qianxinyao.analysis.jieba.keyword.Keyword;
+import com.qianxinyao.analysis.jieba.keyword.TFIDFAnalyzer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * doMatch answers and scores on the template training set for every scoring configuration, pinned to the
+ * values of the implementation before the scorer pipeline was compiled at init
+ *
+ * keywords and synonyms come from the deterministic analyzer and synonym service below, so the pinned values
+ * do not depend on the jieba dictionaries or a synonym server
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/18
+ */
+@SpringBootTest
+class MatchRegressionTest {
+
+    /**
+     * simMethod, segmentMethod, algorithm, tfidfMode, synonymMode
+     */
+    static final String[][] CONFIGS = {
+            {"debatty", "combo", "0", "0", "0"}, {"debatty", "combo", "0", "0", "1"},
+            {"debatty", "combo", "0", "1", "0"}, {"debatty", "combo", "0", "1", "1"},
+            {"debatty", "combo", "1", "0", "0"}, {"debatty", "combo", "1", "0", "1"},
+            {"debatty", "combo", "1", "1", "0"}, {"debatty", "combo", "1", "1", "1"},
+            {"debatty", "combo", "2", "0", "0"}, {"debatty", "combo", "2", "0", "1"},
+            {"debatty", "combo", "2", "1", "0"}, {"debatty", "combo", "2", "1", "1"},
+            {"hutool", "ikea", "0", "0", "0"}, {"hutool", "ikea", "0", "0", "1"},
+            {"hutool", "ikea", "0", "1", "0"}, {"hutool", "ikea", "0", "1", "1"},
+            {"hutool", "ikea", "1", "0", "0"}, {"hutool", "ikea", "1", "0", "1"},
+            {"hutool", "ikea", "1", "1", "0"}, {"hutool", "ikea", "1", "1", "1"},
+            {"hutool", "ikea", "2", "0", "0"}, {"hutool", "ikea", "2", "0", "1"},
+            {"hutool", "ikea", "2", "1", "0"}, {"hutool", "ikea", "2", "1", "1"}
+    };
+
+    private static final String[] FIELDS = {"simMethod", "segmentMethod", "algorithm", "tfidfMode", "synonymMode",
+            "tfidfAnalyzer", "httpService", "fullScan", "simHashEnabled"};
+
+    @Autowired
+    private FaqDataService faqDataService;
+
+    @Autowired
+    private FaqMatchService faqMatchService;
+
+    @Test
+    void testPinnedScores() throws IOException {
+        List<String> expected = readExpected();
+        Map<String, Object> saved = new LinkedHashMap<>();
+        for (String field : FIELDS) {
+            saved.put(field, ReflectionTestUtils.getField(faqDataService, field));
+        }
+        List<String> actual = new ArrayList<>();
+        try {
+            // the former implementation scanned every related question and had no near duplicate fast path
+            ReflectionTestUtils.setField(faqDataService, "fullScan", true);
+            ReflectionTestUtils.setField(faqDataService, "simHashEnabled", false);
+            ReflectionTestUtils.setField(faqDataService, "tfidfAnalyzer", new PinnedAnalyzer());
+            ReflectionTestUtils.setField(faqDataService, "httpService", new PinnedSynonyms());
+            for (String[] config : CONFIGS) {
+                actual.addAll(match(config));
+            }
+        } finally {
+            saved.forEach((field, value) -> ReflectionTestUtils.setField(faqDataService, field, value));
+            faqDataService.initData(templateFile());
+        }
+
+        Assertions.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assertions.assertEquals(expected.get(i), actual.get(i));
+        }
+    }
+
+    /**
+     * match the training question variants under a configuration
+     * @param config - simMethod, segmentMethod, algorithm, tfidfMode, synonymMode
+     * @return lines of configuration, query, answer index and answer score separated by tab
+     */
+    private List<String> match(String[] config) throws IOException {
+        ReflectionTestUtils.setField(faqDataService, "simMethod", config[0]);
+        ReflectionTestUtils.setField(faqDataService, "segmentMethod", config[1]);
+        ReflectionTestUtils.setField(faqDataService, "algorithm", Integer.parseInt(config[2]));
+        ReflectionTestUtils.setField(faqDataService, "tfidfMode", Integer.parseInt(config[3]));
+        ReflectionTestUtils.setField(faqDataService, "synonymMode", Integer.parseInt(config[4]));
+        faqDataService.initData(templateFile());
+
+        List<String> lines = new ArrayList<>();
+        List<String> questions = new ArrayList<>();
+        for (int key = 0; key < faqDataService.getFaqMap().size(); key++) {
+            questions.addAll(faqDataService.getFaqMap().get(key));
+        }
+        for (int i = 0; i < questions.size(); i++) {
+            String q = questions.get(i);
+            String other = questions.get((i + 1) % questions.size());
+            // typo, padded, mixed and swapped questions, the swapped one is restored by the pinned synonyms
+            String[] queries = {q.substring(1), q.substring(0, q.length() / 2) + "的" + q.substring(q.length() / 2),
+                    q.substring(0, q.length() / 2) + other.substring(other.length() / 2),
+                    q.length() > 1 ? q.charAt(1) + "" + q.charAt(0) + q.substring(2) : q};
+            for (String query : queries) {
+                if (questions.contains(query)) {
+                    // training questions are answered by the exact lookup before scoring
+                    continue;
+                }
+                ResultModel result = faqMatchService.doMatch(query);
+                int answer = result.getAnswer() == null || result.getAnswer().isEmpty() ? -1
+                        : faqDataService.getAnswers().indexOf(result.getAnswer().get(0).getValue());
+                lines.add(String.join(",", config) + "\t" + query + "\t" + answer + "\t" + result.getAnswer_score());
+            }
+        }
+        return lines;
+    }
+
+    private static File templateFile() throws IOException {
+        return new ClassPathResource("templates/Hackathon_P1_trainingSet_1.xlsx").getFile();
+    }
+
+    private static List<String> readExpected() throws IOException {
+        ClassPathResource resource = new ClassPathResource("match-regression.txt");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(),
+                StandardCharsets.UTF_8))) {
+            return reader.lines().filter(line -> !line.isEmpty()).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * character bigrams and every third trigram as keywords, weighted by their characters,
+     * trigrams contain bigrams so that the keyword containment rules are used
+     */
+    static class PinnedAnalyzer extends TFIDFAnalyzer {
+        @Override
+        public List<Keyword> analyze(String content, int topN) {
+            Map<String, Double> weights = new LinkedHashMap<>();
+            for (int i = 0; i + 2 <= content.length(); i++) {
+                weights.putIfAbsent(content.substring(i, i + 2), weight(content.substring(i, i + 2)));
+                if (i % 3 == 0 && i + 3 <= content.length()) {
+                    weights.putIfAbsent(content.substring(i, i + 3), weight(content.substring(i, i + 3)));
+                }
+            }
+            return weights.entrySet().stream()
+                    .sorted(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()))
+                    .limit(topN)
+                    .map(e -> new Keyword(e.getKey(), e.getValue()))
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        public List<Keyword> analyzeEx(String content, int topN, int mode) {
+            return analyze(content, topN);
+        }
+
+        private static double weight(String word) {
+            int sum = 0;
+            for (int i = 0; i < word.length(); i++) {
+                sum += word.charAt(i);
+            }
+            return word.length() + (sum % 17) / 4.0;
+        }
+    }
+
+    /**
+     * synonym service answering the reversed keyword
+     */
+    static class PinnedSynonyms extends HttpService {
+        @Override
+        public String doGet(URI uri) {
+            String query = uri.toString();
+            String word = query.substring(query.lastIndexOf('=') + 1);
+            return "{\"word\":[\"" + new StringBuilder(word).reverse() + "\"]}";
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.hackathon.ceptional;
+
+import com.hackathon.ceptional.config.Constants;
+import com.hackathon.ceptional.model.ResultModel;
+import com.hackathon.ceptional.model.ScoreModel;
+import com.hackathon.ceptional.service.FaqDataService;
+import com.hackathon.ceptional.service.FaqMatchService;
+import com.hackathon.ceptional.util.MetricsUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * recall of candidate retrieval against the full scan, on the training set
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/17
+ */
+@SpringBootTest
+class RetrievalTest {
+
+    @Autowired
+    private FaqDataService faqDataService;
+
+    @Autowired
+    private FaqMatchService faqMatchService;
+
+    @Value("${faq.training.set}")
+    private String trainingSet;
+
+    @Test
+    void testKeywordRecall() throws IOException {
+        Assertions.assertTrue(measureRecall("keyword") > 0.8);
+    }
+
+    @Test
+    void testBm25Recall() throws IOException {
+        Assertions.assertTrue(measureRecall("bm25") > 0.8);
+    }
+
+    @Test
+    void testQGramRecall() throws IOException {
+        Assertions.assertTrue(measureRecall("qgram") > 0.8);
+    }
+
+    @Test
+    void testHnswRecall() throws IOException {
+        Assertions.assertTrue(measureRecall("hnsw") > 0.8);
+    }
+
+    @Test
+    void testVectorRecall() throws IOException {
+        Assertions.assertTrue(measureRecall("vector") > 0.8);
+    }
+
+    /**
+     * recall of the retrieval method against the full scan, on training questions and their typo variants
+     * @param method - retrieval method
+     * @return the lower one of exact and typo recall
+     */
+    private double measureRecall(String method) throws IOException {
+        initData(method);
+        List<String> questions = faqDataService.getQuestionList();
+        int exactHit = 0;
+        int typoHit = 0;
+        long fullTime = 0;
+        long retrievalTime = 0;
+        for (String q : questions) {
+            // drop one character in the middle to simulate a typo
+            String typo = q.length() > 2 ? q.substring(0, q.length() / 2) + q.substring(q.length() / 2 + 1) : q;
+
+            faqDataService.setFullScan(true);
+            long begin = System.nanoTime();
+            String expected = answerOf(faqMatchService.doMatch(q));
+            String expectedTypo = answerOf(faqMatchService.doMatch(typo));
+            fullTime += System.nanoTime() - begin;
+
+            faqDataService.setFullScan(false);
+            begin = System.nanoTime();
+            exactHit += expected.equals(answerOf(faqMatchService.doMatch(q))) ? 1 : 0;
+            typoHit += expectedTypo.equals(answerOf(faqMatchService.doMatch(typo))) ? 1 : 0;
+            retrievalTime += System.nanoTime() - begin;
+        }
+
+        int total = questions.size();
+        double exactRecall = (double) exactHit / total;
+        double typoRecall = (double) typoHit / total;
+        System.out.println(method + " retrieval top-" + faqDataService.getRetrievalTopCount() + ", questions: " + total
+                + ", exact recall: " + exactRecall + ", typo recall: " + typoRecall
+                + ", full scan avg us: " + fullTime / 2000 / total
+                + ", retrieval avg us: " + retrievalTime / 2000 / total);
+        return Math.min(exactRecall, typoRecall);
+    }
+
+    @Test
+    void testExactLookup() throws IOException {
+        initData("keyword");
+        String question = faqDataService.getQuestionList().get(0);
+        long hit = MetricsUtil.get(Constants.METRIC_EXACT_HIT);
+        ResultModel result = faqMatchService.doMatch(" " + question + "？");
+        Assertions.assertEquals(100.0, result.getAnswer_score());
+        Assertions.assertEquals(faqDataService.getAnswers().get(0), answerOf(result));
+        Assertions.assertEquals(hit + 1, MetricsUtil.get(Constants.METRIC_EXACT_HIT));
+    }
+
+    @Test
+    void testCascadeKeepsResult() throws IOException {
+        initData("keyword");
+        faqDataService.setFullScan(true);
+        List<String> questions = faqDataService.getQuestionList();
+        long candidate = MetricsUtil.get(Constants.METRIC_CASCADE_CANDIDATE);
+        long scored = MetricsUtil.get(Constants.METRIC_CASCADE_SCORED);
+        for (int i = 0; i < questions.size(); i++) {
+            String q = questions.get(i);
+            String other = questions.get((i + 1) % questions.size());
+            // typo, truncated and mixed questions, exact ones are answered before scoring
+            String[] queries = {q.substring(1), q.substring(0, q.length() / 2) + "的" + q.substring(q.length() / 2),
+                    q.substring(0, q.length() / 2) + other.substring(other.length() / 2), "请问" + q};
+            for (String query : queries) {
+                faqDataService.setCascadeEnabled(false);
+                ResultModel expected = faqMatchService.doMatch(query);
+                faqDataService.setCascadeEnabled(true);
+                ResultModel actual = faqMatchService.doMatch(query);
+                Assertions.assertEquals(answerOf(expected), answerOf(actual));
+                Assertions.assertEquals(expected.getAnswer_score(), actual.getAnswer_score(), 1e-9);
+            }
+        }
+        faqDataService.setFullScan(false);
+        System.out.println("cascade candidates: " + (MetricsUtil.get(Constants.METRIC_CASCADE_CANDIDATE) - candidate)
+                + ", scored: " + (MetricsUtil.get(Constants.METRIC_CASCADE_SCORED) - scored)
+                + ", pruned by length: " + MetricsUtil.get(Constants.METRIC_CASCADE_PRUNED_LENGTH)
+                + ", jaccard: " + MetricsUtil.get(Constants.METRIC_CASCADE_PRUNED_JACCARD)
+                + ", edit: " + MetricsUtil.get(Constants.METRIC_CASCADE_PRUNED_EDIT));
+    }
+
+    @Test
+    void testExplainTopCandidates() throws IOException {
+        initData("keyword");
+        faqDataService.setFullScan(true);
+        List<String> questions = faqDataService.getQuestionList();
+        int agreed = 0;
+        int total = 0;
+        for (int i = 0; i < questions.size(); i++) {
+            String q = questions.get(i);
+            String query = q.substring(0, q.length() / 2) + "的" + q.substring(q.length() / 2);
+            List<ScoreModel> explanations = faqMatchService.explain(query, 3);
+            Assertions.assertFalse(explanations.isEmpty());
+            Assertions.assertTrue(explanations.size() <= 3);
+            for (int j = 1; j < explanations.size(); j++) {
+                Assertions.assertTrue(explanations.get(j - 1).getAdjustedScore()
+                        >= explanations.get(j).getAdjustedScore());
+            }
+            Assertions.assertFalse(explanations.get(0).getInfo().isEmpty());
+            String expected = answerOf(faqMatchService.doMatch(query));
+            if (!expected.isEmpty()) {
+                total++;
+                if (expected.equals(faqDataService.getAnswers().get(explanations.get(0).getKey()))) {
+                    agreed++;
+                }
+            }
+        }
+        // a client topK is bounded by the related questions
+        List<ScoreModel> all = faqMatchService.explain(questions.get(0), Integer.MAX_VALUE);
+        Assertions.assertTrue(all.size() <= questions.size());
+        faqDataService.setFullScan(false);
+        // the near duplicate fast path and ties may answer differently
+        Assertions.assertTrue(agreed >= total * 0.9);
+    }
+
+    @Test
+    void testSegmentCache() throws IOException {
+        initData("keyword");
+        String text = "汽车上可以拿几个行李箱";
+        long hit = MetricsUtil.get(Constants.METRIC_SEGMENT_CACHE_HIT);
+        long miss = MetricsUtil.get(Constants.METRIC_SEGMENT_CACHE_MISS);
+        String first = faqMatchService.jiebaTfidf(text, 1);
+        String second = faqMatchService.jiebaTfidf(" " + text + " ", 1);
+        Assertions.assertEquals(first, second);
+        Assertions.assertEquals(miss + 1, MetricsUtil.get(Constants.METRIC_SEGMENT_CACHE_MISS));
+        Assertions.assertEquals(hit + 1, MetricsUtil.get(Constants.METRIC_SEGMENT_CACHE_HIT));
+
+        // rebuilt index drops cached results
+        int[] loads = new int[1];
+        faqDataService.cached("test", text, t -> ++loads[0]);
+        faqDataService.cached("test", text, t -> ++loads[0]);
+        Assertions.assertEquals(1, loads[0]);
+        initData("keyword");
+        faqDataService.cached("test", text, t -> ++loads[0]);
+        Assertions.assertEquals(2, loads[0]);
+    }
+
+    @Test
+    void testNearestRadius() throws IOException {
+        initData("keyword");
+        String question = faqDataService.getQuestionList().get(0);
+        Assertions.assertEquals(question, faqDataService.nearest(question, 0).get(0).getQuestion());
+        Assertions.assertTrue(faqDataService.acceptableRadius(-1));
+        Assertions.assertTrue(faqDataService.acceptableRadius(4));
+        // larger radius prunes nothing in the bk-tree
+        Assertions.assertFalse(faqDataService.acceptableRadius(5));
+    }
+
+    private void initData(String method) throws IOException {
+        // use the real training set when deployed in config/, else the template
+        File dataFile = new File(System.getProperty("user.dir") + File.separator + "config", trainingSet);
+        if (!dataFile.exists()) {
+            dataFile = new ClassPathResource("templates/Hackathon_P1_trainingSet_1.xlsx").getFile();
+        }
+        faqDataService.setRetrievalMethod(method);
+        faqDataService.initData(dataFile);
+    }
+
+    private String answerOf(ResultModel result) {
+        if (result.getAnswer() == null || result.getAnswer().isEmpty()) {
+            return "";
+        }
+        return result.getAnswer().get(0).getValue();
+    }
+}
@@ -1,13 +1,48 @@
 package com.hackathon.ceptional;
 
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.extra.tokenizer.TokenizerEngine;
+import cn.hutool.extra.tokenizer.TokenizerUtil;
+import cn.hutool.extra.tokenizer.Word;
+import cn.hutool.extra.tokenizer.engine.hanlp.HanLPEngine;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.hackathon.ceptional.service.SimilarityMatrixService;
+import com.hackathon.ceptional.util.CharSignature;
 import com.hackathon.ceptional.util.HuToolUtil;
+import com.hackathon.ceptional.util.SegmentUtil;
 import com.hackathon.ceptional.util.SimilarityUtil;
+import com.hackathon.ceptional.util.SparseTermVector;
+import com.hackathon.ceptional.util.TermDictionary;
+import com.hankcs.hanlp.HanLP;
+import com.sun.management.ThreadMXBean;
+import info.debatty.java.stringsimilarity.Damerau;
+import info.debatty.java.stringsimilarity.JaroWinkler;
+import info.debatty.java.stringsimilarity.MetricLCS;
+import info.debatty.java.stringsimilarity.NGram;
+import org.jsoup.Jsoup;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.wltea.analyzer.core.IKSegmenter;
+import org.wltea.analyzer.core.Lexeme;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 import java.util.Vector;
+import java.util.stream.Collectors;
 
 /**
  * test methods for similarity
@@ -36,6 +71,253 @@ class SimilarityTest {
         Assertions.assertTrue(sim1 > 0);
     }
 
+    @Test
+    void testBitParallelLd() {
+        Random random = new Random(23);
+        for (int i = 0; i < 3000; i++) {
+            // short and long, single word and blocked, small and large alphabets
+            int alphabet = i % 2 == 0 ? 4 : 500;
+            String s1 = randomText(random, random.nextInt(i % 3 == 0 ? 200 : 65), alphabet);
+            String s2 = random.nextBoolean() ? randomText(random, random.nextInt(i % 3 == 0 ? 200 : 65), alphabet)
+                    : mutate(random, s1, alphabet);
+            int expected = referenceLd(s1, s2);
+            Assertions.assertEquals(expected, SimilarityUtil.ld(s1, s2));
+            Assertions.assertEquals(expected, SimilarityUtil.ld(s2, s1));
+
+            int bound = random.nextInt(10);
+            Assertions.assertEquals(Math.min(expected, bound + 1), SimilarityUtil.ld(s1, s2, bound));
+
+            int maxLen = Math.max(s1.length(), s2.length());
+            if (maxLen > 0) {
+                double sim = 1 - (double) expected / maxLen;
+                double minSim = random.nextDouble();
+                double bounded = SimilarityUtil.sim(s1, s2, minSim);
+                if (sim >= minSim) {
+                    Assertions.assertEquals(sim, bounded, 1e-12);
+                } else {
+                    Assertions.assertTrue(bounded < minSim && bounded >= sim);
+                }
+            }
+        }
+    }
+
+    /**
+     * timing loops only run with -Dsimilarity.bench=true
+     */
+    private static boolean benchmark() {
+        return Boolean.getBoolean("similarity.bench");
+    }
+
+    @Test
+    void testLdSpeed() {
+        Random random = new Random(29);
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            texts.add(randomText(random, 8 + random.nextInt(20), 500));
+        }
+        // also warms up
+        for (int i = 1; i < texts.size(); i++) {
+            Assertions.assertEquals(referenceLd(texts.get(i - 1), texts.get(i)),
+                    SimilarityUtil.ld(texts.get(i - 1), texts.get(i)));
+            SimilarityUtil.sim(texts.get(i - 1), texts.get(i), 0.6);
+        }
+        if (!benchmark()) {
+            return;
+        }
+        long sum = 0;
+        long begin = System.nanoTime();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 1; i < texts.size(); i++) {
+                sum += referenceLd(texts.get(i - 1), texts.get(i));
+            }
+        }
+        long referenceNs = System.nanoTime() - begin;
+        begin = System.nanoTime();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 1; i < texts.size(); i++) {
+                sum -= SimilarityUtil.ld(texts.get(i - 1), texts.get(i));
+            }
+        }
+        long bitParallelNs = System.nanoTime() - begin;
+        begin = System.nanoTime();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 1; i < texts.size(); i++) {
+                SimilarityUtil.sim(texts.get(i - 1), texts.get(i), 0.6);
+            }
+        }
+        long boundedNs = System.nanoTime() - begin;
+        Assertions.assertEquals(0, sum);
+        System.out.println("ld ns per call, matrix: " + referenceNs / 20000 + ", bit-parallel: " + bitParallelNs / 20000
+                + ", bounded 0.6: " + boundedNs / 20000);
+    }
+
+    @Test
+    void testKernelsMatchDebatty() {
+        Random random = new Random(31);
+        JaroWinkler jaroWinkler = new JaroWinkler();
+        Damerau damerau = new Damerau();
+        MetricLCS metricLcs = new MetricLCS();
+        NGram nGram = new NGram();
+        for (int i = 0; i < 3000; i++) {
+            int alphabet = i % 2 == 0 ? 4 : 500;
+            String s1 = randomText(random, random.nextInt(i % 3 == 0 ? 120 : 30), alphabet);
+            String s2 = random.nextBoolean() ? randomText(random, random.nextInt(i % 3 == 0 ? 120 : 30), alphabet)
+                    : mutate(random, s1, alphabet);
+            if (i % 50 == 0) {
+                // special character of ngram padding inside the text
+                s1 = "\n" + s1;
+                s2 = "\n" + s2;
+            }
+            assertSame(jaroWinkler.similarity(s1, s2), SimilarityUtil.jaroSimilarity(s1, s2));
+            Assertions.assertTrue(SimilarityUtil.jaroUpperBound(s1.length(), s2.length()) + 1e-6
+                    >= SimilarityUtil.jaroSimilarity(s1, s2));
+            assertSame(damerau.distance(s1, s2), SimilarityUtil.damerauSimilarity(s1, s2));
+            assertSame(metricLcs.distance(s1, s2), SimilarityUtil.metricLcsSimilarity(s1, s2));
+            assertSame(nGram.distance(s1, s2), SimilarityUtil.nGramSimilarity(s1, s2));
+        }
+    }
+
+    /**
+     * bytes allocated per call after warm up, debatty objects against the in-house kernels
+     */
+    @Test
+    void testKernelsAllocation() {
+        ThreadMXBean bean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        Random random = new Random(37);
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            texts.add(randomText(random, 8 + random.nextInt(20), 500));
+        }
+        SimilarityUtil.reserve(28);
+
+        double checksum = 0;
+        long[] bytes = new long[2];
+        for (int round = 0; round < 3; round++) {
+            // last round is measured
+            long begin = bean.getThreadAllocatedBytes(threadId);
+            for (int i = 1; i < texts.size(); i++) {
+                String s1 = texts.get(i - 1);
+                String s2 = texts.get(i);
+                checksum += new JaroWinkler().similarity(s1, s2) + new Damerau().distance(s1, s2)
+                        + new MetricLCS().distance(s1, s2) + new NGram().distance(s1, s2);
+            }
+            long middle = bean.getThreadAllocatedBytes(threadId);
+            for (int i = 1; i < texts.size(); i++) {
+                String s1 = texts.get(i - 1);
+                String s2 = texts.get(i);
+                checksum -= SimilarityUtil.jaroSimilarity(s1, s2) + SimilarityUtil.damerauSimilarity(s1, s2)
+                        + SimilarityUtil.metricLcsSimilarity(s1, s2) + SimilarityUtil.nGramSimilarity(s1, s2);
+            }
+            long end = bean.getThreadAllocatedBytes(threadId);
+            bytes[0] = middle - begin;
+            bytes[1] = end - middle;
+        }
+        int calls = texts.size() - 1;
+        System.out.println("bytes per call of the four metrics, debatty: " + bytes[0] / calls
+                + ", in-house: " + bytes[1] / calls);
+        Assertions.assertEquals(0, checksum, 1e-6);
+        Assertions.assertEquals(0, bytes[1] / calls);
+    }
+
+    @Test
+    void testCharSignature() {
+        Random random = new Random(41);
+        int pruned = 0;
+        for (int i = 0; i < 5000; i++) {
+            int alphabet = i % 2 == 0 ? 20 : 2000;
+            String s1 = randomText(random, random.nextInt(40), alphabet);
+            String s2 = random.nextBoolean() ? randomText(random, random.nextInt(40), alphabet)
+                    : mutate(random, s1, alphabet);
+            CharSignature sig1 = CharSignature.of(s1);
+            CharSignature sig2 = CharSignature.of(s2);
+            double expected = referenceJaccard(s1, s2);
+            assertSame(expected, SimilarityUtil.jacCardSimilarity(s1, s2));
+            assertSame(expected, sig1.jaccard(sig2));
+            if (!Double.isNaN(expected)) {
+                double bound = sig1.jaccardUpperBound(sig2);
+                Assertions.assertTrue(bound >= expected);
+                pruned += bound < 0.5 ? 1 : 0;
+            }
+        }
+        System.out.println("char signature, pairs whose bound is below 0.5: " + pruned + " of 5000");
+    }
+
+    /**
+     * boxed character sets and nested loop, the former jacCardSimilarity
+     */
+    private double referenceJaccard(String str1, String str2) {
+        Set<Character> s1 = new HashSet<>();
+        Set<Character> s2 = new HashSet<>();
+        for (int i = 0; i < str1.length(); i++) {
+            s1.add(str1.charAt(i));
+        }
+        for (int j = 0; j < str2.length(); j++) {
+            s2.add(str2.charAt(j));
+        }
+        float commonNum = 0;
+        for (Character ch1 : s1) {
+            for (Character ch2 : s2) {
+                if (ch1.equals(ch2)) {
+                    commonNum++;
+                }
+            }
+        }
+        float mergeNum = s1.size() + s2.size() - commonNum;
+        return commonNum / mergeNum;
+    }
+
+    private void assertSame(double expected, double actual) {
+        Assertions.assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+    }
+
+    /**
+     * full matrix levenshtein distance as reference
+     */
+    private int referenceLd(String s1, String s2) {
+        int[][] d = new int[s1.length() + 1][s2.length() + 1];
+        for (int i = 0; i <= s1.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= s2.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= s1.length(); i++) {
+            for (int j = 1; j <= s2.length(); j++) {
+                int cost = s1.charAt(i - 1) == s2.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+            }
+        }
+        return d[s1.length()][s2.length()];
+    }
+
+    private String randomText(Random random, int len, int alphabet) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < len; i++) {
+            sb.append((char) (0x4E00 + random.nextInt(alphabet)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * a few random edits
+     */
+    private String mutate(Random random, String text, int alphabet) {
+        StringBuilder sb = new StringBuilder(text);
+        for (int edit = random.nextInt(6); edit > 0; edit--) {
+            int pos = random.nextInt(sb.length() + 1);
+            char c = (char) (0x4E00 + random.nextInt(alphabet));
+            if (pos < sb.length() && random.nextBoolean()) {
+                sb.setCharAt(pos, c);
+            } else if (pos < sb.length() && random.nextBoolean()) {
+                sb.deleteCharAt(pos);
+            } else {
+                sb.insert(pos, c);
+            }
+        }
+        return sb.toString();
+    }
+
     @Test
     void testHuSim() {
         String s1 = "购买汽车票电话号码错误";
@@ -58,6 +340,306 @@ class SimilarityTest {
         Assertions.assertTrue(rawSim > 0 && chineseSim > 0 && hanlpSim > 0 && ikSim > 0 && jiebaSim > 0);
     }
 
+    @Test
+    void testSparseTermVector() {
+        Random random = new Random(43);
+        TermDictionary dictionary = new TermDictionary();
+        List<Vector<String>> faqs = new ArrayList<>();
+        List<SparseTermVector> faqVectors = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Vector<String> terms = randomTerms(random, 1 + random.nextInt(12), 300);
+            faqs.add(terms);
+            faqVectors.add(SparseTermVector.of(terms, dictionary));
+        }
+        for (int i = 0; i < 200; i++) {
+            // vocabulary twice as large, so that some query terms are unknown
+            Vector<String> query = randomTerms(random, 1 + random.nextInt(12), 600);
+            SparseTermVector queryVector = SparseTermVector.lookup(query, dictionary);
+            for (int j = 0; j < faqs.size(); j++) {
+                Assertions.assertEquals(HuToolUtil.getSimilarity(query, faqs.get(j)),
+                        HuToolUtil.getSimilarity(queryVector, faqVectors.get(j)), 1e-12);
+            }
+        }
+        Assertions.assertEquals(300, dictionary.size());
+
+        Vector<String> s1 = HuToolUtil.participleIk("购买汽车票电话号码错误");
+        Vector<String> s2 = HuToolUtil.participleIk("汽车票电话号码写错了怎么办");
+        SparseTermVector faqVector = SparseTermVector.of(s2, dictionary);
+        Assertions.assertEquals(HuToolUtil.getSimilarity(s1, s2),
+                HuToolUtil.getSimilarity(SparseTermVector.lookup(s1, dictionary), faqVector), 1e-12);
+        if (!benchmark()) {
+            return;
+        }
+
+        int rounds = 200;
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (int j = 0; j < faqs.size(); j++) {
+                HuToolUtil.getSimilarity(faqs.get(round), faqs.get(j));
+            }
+        }
+        long mapCost = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (int j = 0; j < faqs.size(); j++) {
+                HuToolUtil.getSimilarity(faqVectors.get(round), faqVectors.get(j));
+            }
+        }
+        long sparseCost = System.nanoTime() - start;
+        long pairs = (long) rounds * faqs.size();
+        System.out.println("hutool similarity, map: " + mapCost / pairs + " ns/pair, sparse: "
+                + sparseCost / pairs + " ns/pair");
+    }
+
+    /**
+     * bulk signature bounds against CharSignature.intersectionUpperBound on faq length texts
+     */
+    @Test
+    void testSignatureBounds() {
+        Random random = new Random(53);
+        // candidates of a query, a few thousand stays in cache like a retrieved candidate set
+        int count = Integer.parseInt(System.getProperty("signature.count", "4099"));
+        long[] lows = new long[count];
+        long[] highs = new long[count];
+        int[] sizes = new int[count];
+        List<CharSignature> signatures = new ArrayList<>();
+        String query = randomText(random, 16, 2000);
+        for (int i = 0; i < count; i++) {
+            String text = i % 3 == 0 ? mutate(random, query, 2000) : randomText(random, 8 + random.nextInt(23), 2000);
+            CharSignature signature = CharSignature.of(text);
+            signatures.add(signature);
+            lows[i] = signature.low();
+            highs[i] = signature.high();
+            sizes[i] = signature.size();
+        }
+        CharSignature qSignature = CharSignature.of(query);
+
+        int[] bounds = new int[count];
+        qSignature.intersectionUpperBounds(lows, highs, sizes, bounds);
+        for (int i = 0; i < count; i++) {
+            Assertions.assertEquals(qSignature.intersectionUpperBound(signatures.get(i)), bounds[i]);
+            Assertions.assertEquals(qSignature.jaccardUpperBound(signatures.get(i)),
+                    qSignature.jaccardUpperBound(bounds[i], sizes[i]));
+        }
+        if (!benchmark()) {
+            return;
+        }
+
+        int rounds = 2000;
+        long bulkCost = 0;
+        long pairCost = 0;
+        int sink = 0;
+        for (int round = 0; round < rounds * 2; round++) {
+            // first half warms up
+            long begin = System.nanoTime();
+            qSignature.intersectionUpperBounds(lows, highs, sizes, bounds);
+            long middle = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                sink += qSignature.intersectionUpperBound(signatures.get(i));
+            }
+            long end = System.nanoTime();
+            if (round >= rounds) {
+                bulkCost += middle - begin;
+                pairCost += end - middle;
+            }
+        }
+        double calls = (double) rounds * count;
+        System.out.println(String.format("signature bounds ns per candidate, bulk: %.2f, per pair: %.2f (%d)",
+                bulkCost / calls, pairCost / calls, sink));
+    }
+
+    /**
+     * golden corpus, plain questions, inline and other markup, entities, comments and whitespace variants
+     */
+    private static final String[] GOLDEN = {
+            "购买汽车票电话号码错误", "预订手机号写错了怎么办", "出票失败怎么没赔付", "购票失败红包没了怎么回事",
+            "怎么 退票？", "  改签\t手续费\n是多少  ", "退款多久到账？\r\n需要3-5个工作日", "a<3", "1<2>0", "x<", "</",
+            "<b>加粗</b>的问题", "<B>大写</B>标签", "<span>退票</span><em>规则</em>", "<b><i>错</b>位</i>嵌套",
+            "<a>链接<a>再链接</a>", "</b>只有结束标签", "<p>段落</p><p>两段</p>", "换行<br>之后", "<br/>自闭合",
+            "<ahref=x>属性</a>", "<script>var a = 1;</script>脚本", "<style>p{}</style>样式", "<!-- 注释 -->内容",
+            "<?xml?>声明", "&amp;实体&lt;&gt;", "&nbsp;空格&nbsp;", "&#20013;文", "AT&T", "不间断 空格",
+            "零宽​空格", "软­连字符", "\u0001控制字符\u0001", "<h1>标题</h1>", "<title>标题</title>正文",
+            "<table><tr><td>表格</td></tr></table>", "<textarea><b>原样</b></textarea>", "</3坏标签", "<b",
+            "<span\t>tab</span>", "<font>字体</font>，标点。", "！@#￥……&*（）——", ""
+    };
+
+    @Test
+    void testFindSimilarityGolden() {
+        List<String> corpus = new ArrayList<>(Arrays.asList(GOLDEN));
+        Random random = new Random(47);
+        String[] pieces = {"<", ">", "/", "b", "span", "p", "br", "!", "&", "amp;", "#", " ", "\t", "\n", " ",
+                "​", "退票", "改签", "多久", "？", "，", "a", "1"};
+        for (int i = 0; i < 3000; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = random.nextInt(12); j > 0; j--) {
+                sb.append(pieces[random.nextInt(pieces.length)]);
+            }
+            corpus.add(sb.toString());
+        }
+
+        int scanned = 0;
+        for (String text : corpus) {
+            String plain = text.replace(" ", "");
+            String expected = Jsoup.parse(plain).body().text();
+            Assertions.assertEquals(expected, HuToolUtil.stripHtml(plain), text);
+            scanned += plain.indexOf('&') < 0 ? 1 : 0;
+        }
+        for (int i = 0; i < corpus.size(); i++) {
+            String s1 = corpus.get(i);
+            String s2 = corpus.get((i * 7 + 3) % corpus.size());
+            assertSame(referenceFindSimilarity(s1, s2), HuToolUtil.findSimilarity(s1, s2));
+        }
+        System.out.println("golden corpus: " + corpus.size() + " texts, " + scanned + " without entities");
+    }
+
+    /**
+     * jsoup, distinct merged word list and Collections.frequency, the former findSimilarity
+     */
+    private double referenceFindSimilarity(String sentenceOne, String sentenceTwo) {
+        List<String> sentOneWords = referenceSplitWords(sentenceOne);
+        List<String> sentTwoWords = referenceSplitWords(sentenceTwo);
+        List<String> allWords = new ArrayList<>(sentOneWords);
+        allWords.addAll(sentTwoWords);
+        allWords = allWords.stream().distinct().collect(Collectors.toList());
+        double dividend = 0;
+        double divisor1 = 0;
+        double divisor2 = 0;
+        for (String word : allWords) {
+            int one = Collections.frequency(sentOneWords, word);
+            int two = Collections.frequency(sentTwoWords, word);
+            dividend += one * two;
+            divisor1 += Math.pow(one, 2);
+            divisor2 += Math.pow(two, 2);
+        }
+        return dividend / (Math.sqrt(divisor1) * Math.sqrt(divisor2));
+    }
+
+    private List<String> referenceSplitWords(String sentence) {
+        sentence = Jsoup.parse(sentence.replace(" ", "")).body().text();
+        return HanLP.segment(sentence).stream().map(a -> a.word).filter(s -> !("`~!@#$^&*()=|{}':;',\\[\\]" +
+                ".<>/?~！@#￥……&*（）——|{}【】‘；：”“'。，、？ ").contains(s)).collect(Collectors.toList());
+    }
+
+    private Vector<String> randomTerms(Random random, int count, int vocabulary) {
+        Vector<String> terms = new Vector<>();
+        for (int i = 0; i < count; i++) {
+            terms.add("t" + random.nextInt(vocabulary));
+        }
+        return terms;
+    }
+
+    @Test
+    void testSimilarityMatrix() throws IOException {
+        String[] base = {"购买汽车票电话号码错误", "预订手机号写错了怎么办", "乘坐长途汽车可携带多少行李",
+                "汽车上可以拿几个行李箱", "出票失败怎么没赔付", "购票失败红包没了怎么回事"};
+        Random random = new Random(47);
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 70; i++) {
+            String s1 = base[random.nextInt(base.length)];
+            String s2 = base[random.nextInt(base.length)];
+            int cut = random.nextInt(Math.min(s1.length(), s2.length()));
+            rows.add(s1.substring(cut) + s2.substring(0, cut));
+        }
+        List<String> columns = Arrays.asList(base);
+        List<String> metrics = Arrays.asList("jaro", "editDistance", "jacCard", "rawSim", "hanlpSim", "ikeaSim");
+
+        SimilarityMatrixService service = new SimilarityMatrixService();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.matrix(rows, columns, metrics, out);
+        String[] lines = out.toString("UTF-8").split("\n");
+        Assertions.assertEquals(rows.size(), lines.length);
+        // a cell budget below one row still writes every row, one per block
+        ReflectionTestUtils.setField(service, "blockCells", 10);
+        ByteArrayOutputStream narrow = new ByteArrayOutputStream();
+        service.matrix(rows, columns, metrics, narrow);
+        Assertions.assertEquals(out.toString("UTF-8"), narrow.toString("UTF-8"));
+        Assertions.assertTrue(service.acceptable(10000, 1000));
+        Assertions.assertFalse(service.acceptable(10001, 1));
+        Assertions.assertFalse(service.acceptable(5000, 0));
+        for (String line : lines) {
+            JsonObject row = JsonParser.parseString(line).getAsJsonObject();
+            String s1 = rows.get(row.get("row").getAsInt());
+            Assertions.assertEquals(s1, row.get("text").getAsString());
+            for (int j = 0; j < columns.size(); j++) {
+                String s2 = columns.get(j);
+                Assertions.assertEquals(SimilarityUtil.jaroSimilarity(s1, s2),
+                        row.getAsJsonArray("jaro").get(j).getAsDouble());
+                Assertions.assertEquals(SimilarityUtil.sim(s1, s2),
+                        row.getAsJsonArray("editDistance").get(j).getAsDouble());
+                Assertions.assertEquals(SimilarityUtil.jacCardSimilarity(s1, s2),
+                        row.getAsJsonArray("jacCard").get(j).getAsDouble());
+                Assertions.assertEquals(HuToolUtil.findSimilarity(s1, s2),
+                        row.getAsJsonArray("rawSim").get(j).getAsDouble());
+                Assertions.assertEquals(HuToolUtil.getSimilarity(HuToolUtil.participleHanLP(s1),
+                        HuToolUtil.participleHanLP(s2)), row.getAsJsonArray("hanlpSim").get(j).getAsDouble(), 1e-9);
+                Assertions.assertEquals(HuToolUtil.getSimilarity(HuToolUtil.participleIk(s1),
+                        HuToolUtil.participleIk(s2)), row.getAsJsonArray("ikeaSim").get(j).getAsDouble(), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void testSegmentEngines() throws IOException {
+        String[] texts = {"购买汽车票电话号码错误", "预订手机号写错了怎么办", "乘坐长途汽车可携带多少行李", "汽车上可以拿几个行李箱",
+                "出票失败怎么没赔付", "购票失败红包没了怎么回事", "", "A,B,C", "退票,改签"};
+        // same tokens as engines created per call
+        for (String text : texts) {
+            Assertions.assertEquals(referenceIk(text), Arrays.asList(SegmentUtil.ik(text, false)));
+            Assertions.assertEquals(referenceParse(new HanLPEngine(), text), Arrays.asList(SegmentUtil.hanLP(text)));
+            Assertions.assertEquals(referenceParse(TokenizerUtil.createEngine(), text),
+                    Arrays.asList(SegmentUtil.chinese(text)));
+        }
+        if (!benchmark()) {
+            return;
+        }
+
+        int rounds = 2000;
+        long checksum = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            long perCall = 0;
+            long pooled = 0;
+            for (int r = 0; r < rounds; r++) {
+                String text = texts[r % 6];
+                long t0 = System.nanoTime();
+                checksum += referenceIk(text).size() + referenceParse(new HanLPEngine(), text).size()
+                        + referenceParse(TokenizerUtil.createEngine(), text).size();
+                long t1 = System.nanoTime();
+                checksum += SegmentUtil.ik(text, false).length + SegmentUtil.hanLP(text).length
+                        + SegmentUtil.chinese(text).length;
+                long t2 = System.nanoTime();
+                perCall += t1 - t0;
+                pooled += t2 - t1;
+            }
+            // first pass warms up
+            if (pass == 1) {
+                System.out.println("segment ik+hanlp+chinese, per call engines: " + perCall / rounds
+                        + " ns/text, pooled engines: " + pooled / rounds + " ns/text, checksum: " + checksum);
+            }
+        }
+    }
+
+    /**
+     * IK segment with a new segmenter per call, as participleIk did before pooling
+     */
+    private static List<String> referenceIk(String text) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        IKSegmenter ik = new IKSegmenter(new StringReader(text), false);
+        Lexeme lexeme;
+        while ((lexeme = ik.next()) != null) {
+            tokens.add(lexeme.getLexemeText());
+        }
+        return tokens;
+    }
+
+    /**
+     * hutool segment joined and split by comma, as the participle methods did before pooling
+     */
+    @SuppressWarnings("unchecked")
+    private static List<String> referenceParse(TokenizerEngine engine, String text) {
+        String result = CollUtil.join((Iterator<Word>) engine.parse(text), ",");
+        return Arrays.asList(result.split(","));
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     void testWordSegment() {
@@ -0,0 +1,314 @@
+package com.hackathon.ceptional.service;
+
+import com.hackathon.ceptional.index.ContainmentGraph;
+import com.hackathon.ceptional.util.TermDictionary;
+import com.qianxinyao.analysis.jieba.keyword.Keyword;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * keyword similarity over numbered keyword sets against the former implementation on keyword names
+ *
+ * @author Liping
+ * @version 1.0.0
+ * @date 2026/10/18
+ */
+@SpringBootTest
+class KeywordSimTest {
+
+    /**
+     * overlapping names, some contain others, some contain several
+     */
+    private static final String[] VOCABULARY = {"汽车", "汽车票", "长途汽车", "长途汽车票", "票", "车票", "火车票", "长途",
+            "客服", "客服电话", "电话", "电话号码", "号码", "退票", "退票费", "多少"};
+
+    @Autowired
+    private FaqDataService faqDataService;
+
+    @Test
+    void testOverlappingKeywords() {
+        List<Keyword> faq = keywords("汽车", 1.2, "汽车票", 2.5, "长途汽车", 3.1, "票", 0.4);
+        List<List<Keyword>> queries = Arrays.asList(
+                keywords("汽车票", 2.0),
+                keywords("汽车", 1.0),
+                keywords("票", 0.7),
+                keywords("长途汽车", 1.5, "票", 0.3),
+                keywords("汽车", 0.9, "汽车票", 1.1, "长途汽车", 2.2, "票", 0.5),
+                keywords("长途汽车票", 3.0, "汽车", 1.0),
+                // unknown to the faq dictionary
+                keywords("火车票", 2.0, "汽车", 1.0, "票", 0.2),
+                keywords("火车票", 2.0, "车票", 1.3),
+                Collections.emptyList());
+        for (List<Keyword> query : queries) {
+            assertEquivalent(faq, query, dictionaryOf(faq));
+            assertEquivalent(query, faq, dictionaryOf(query));
+        }
+    }
+
+    @Test
+    void testRandomKeywords() {
+        Random random = new Random(61);
+        for (int round = 0; round < 3000; round++) {
+            List<Keyword> faq = randomKeywords(random);
+            List<Keyword> query = randomKeywords(random);
+            // faq names plus some others, query names out of it are unknown
+            TermDictionary dictionary = new TermDictionary();
+            for (String name : VOCABULARY) {
+                if (random.nextInt(4) == 0) {
+                    dictionary.add(name);
+                }
+            }
+            faq.forEach(k -> dictionary.add(k.getName()));
+            assertEquivalent(faq, query, dictionary);
+        }
+    }
+
+    @Test
+    void testDuplicatedKeywords() {
+        // the former implementation failed on repeated names, the first one is kept
+        List<Keyword> faq = keywords("汽车", 1.2, "汽车票", 2.5, "汽车", 0.6, "票", 0.4);
+        List<Keyword> query = keywords("火车票", 2.0, "汽车票", 1.1, "火车票", 0.5, "汽车票", 3.0, "票", 0.2);
+        TermDictionary dictionary = dictionaryOf(faq);
+        ContainmentGraph graph = ContainmentGraph.build(dictionary.terms());
+
+        FaqFeatures.Keywords faqKeys = FaqFeatures.Keywords.of(faq, dictionary, graph);
+        FaqFeatures.Keywords queryKeys = FaqFeatures.Keywords.lookup(query, dictionary);
+        Assertions.assertEquals(3, faqKeys.size());
+        Assertions.assertEquals(3, queryKeys.size());
+        Assertions.assertEquals(referenceNormalized(distinct(faq), distinct(query)),
+                normalized(faqKeys, queryKeys), 1e-12);
+        Assertions.assertEquals(referenceRemoveList(distinct(faq), distinct(query)),
+                removed(faqKeys, queryKeys, names(faq, dictionary)));
+        Assertions.assertEquals(referenceRemoveList(distinct(query), distinct(faq)),
+                removed(queryKeys, faqKeys, names(query, dictionary)));
+        Assertions.assertEquals(referenceSimplex(distinct(faq), distinct(query)), simplex(faqKeys, queryKeys), 1e-12);
+
+        TermDictionary local = new TermDictionary();
+        Assertions.assertEquals(referenceDuplex(distinct(faq), distinct(query)),
+                duplex(FaqFeatures.Keywords.of(faq, local), FaqFeatures.Keywords.of(query, local)), 1e-12);
+    }
+
+    /**
+     * compare the faq side numbered by a dictionary holding its names and the graph of the dictionary,
+     * with the query looked up in it, and both sides numbered by a dictionary of their own as the ad-hoc
+     * text similarity does
+     */
+    private void assertEquivalent(List<Keyword> faq, List<Keyword> query, TermDictionary dictionary) {
+        String message = faq + " | " + query;
+        ContainmentGraph graph = ContainmentGraph.build(dictionary.terms());
+        FaqFeatures.Keywords faqKeys = FaqFeatures.Keywords.of(faq, dictionary, graph);
+        FaqFeatures.Keywords queryKeys = FaqFeatures.Keywords.lookup(query, dictionary);
+        Assertions.assertEquals(referenceNormalized(faq, query), normalized(faqKeys, queryKeys), 1e-12, message);
+        Assertions.assertEquals(referenceNormalized(query, faq), normalized(queryKeys, faqKeys), 1e-12, message);
+        Assertions.assertEquals(referenceRemoveList(faq, query), removed(faqKeys, queryKeys, names(faq, dictionary)),
+                message);
+        Assertions.assertEquals(referenceRemoveList(query, faq), removed(queryKeys, faqKeys, names(query, dictionary)),
+                message);
+        Assertions.assertEquals(referenceSimplex(faq, query), simplex(faqKeys, queryKeys), 1e-12, message);
+
+        TermDictionary local = new TermDictionary();
+        FaqFeatures.Keywords keys1 = FaqFeatures.Keywords.of(faq, local);
+        FaqFeatures.Keywords keys2 = FaqFeatures.Keywords.of(query, local);
+        Assertions.assertEquals(referenceNormalized(faq, query), normalized(keys1, keys2), 1e-12, message);
+        Assertions.assertEquals(referenceRemoveList(faq, query), removed(keys1, keys2, names(faq, local)), message);
+        Assertions.assertEquals(referenceDuplex(faq, query), duplex(keys1, keys2), 1e-12, message);
+    }
+
+    private double normalized(FaqFeatures.Keywords keys1, FaqFeatures.Keywords keys2) {
+        Double sim = ReflectionTestUtils.invokeMethod(faqDataService, "normalizedKeywordSim", keys1, keys2);
+        return sim;
+    }
+
+    private double simplex(FaqFeatures.Keywords faq, FaqFeatures.Keywords q) {
+        Double sim = ReflectionTestUtils.invokeMethod(faqDataService, "simplexKeywordSim", faq, q);
+        return sim;
+    }
+
+    private double duplex(FaqFeatures.Keywords keys1, FaqFeatures.Keywords keys2) {
+        Double sim = ReflectionTestUtils.invokeMethod(faqDataService, "duplexKeywordSim", keys1, keys2);
+        return sim;
+    }
+
+    /**
+     * names of the keywords dropped when compared with the other set
+     */
+    private static Set<String> removed(FaqFeatures.Keywords keys, FaqFeatures.Keywords other,
+                                       Map<Integer, String> names) {
+        Set<String> removed = new HashSet<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (keys.removed(i, other, other.contains(keys.id(i)))) {
+                removed.add(names.get(keys.id(i)));
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * names by id, the same way Keywords.lookup numbers the names out of the dictionary
+     */
+    private static Map<Integer, String> names(List<Keyword> list, TermDictionary dictionary) {
+        Map<Integer, String> names = new LinkedHashMap<>();
+        for (int i = 0; i < list.size(); i++) {
+            String name = list.get(i).getName();
+            int id = dictionary.lookup(name);
+            names.putIfAbsent(id >= 0 ? id : -1 - i, name);
+        }
+        return names;
+    }
+
+    /**
+     * normalizedKeywordSim before keywords were numbered
+     */
+    private static double referenceNormalized(List<Keyword> keys1, List<Keyword> keys2) {
+        Map<String, Double> keyMap1 = keys1.stream().collect(Collectors.toMap(Keyword::getName, Keyword::getTfidfvalue));
+        Map<String, Double> keyMap2 = keys2.stream().collect(Collectors.toMap(Keyword::getName, Keyword::getTfidfvalue));
+        List<String> removeList1 = referenceRemoveList(keyMap1, keyMap2);
+        List<String> removeList2 = referenceRemoveList(keyMap2, keyMap1);
+        removeList1.forEach(keyMap1::remove);
+        removeList2.forEach(keyMap2::remove);
+
+        double total1 = 0;
+        double total2 = 0;
+        double tfidf1 = 0;
+        double tfidf2 = 0;
+        for (Map.Entry<String, Double> entry : keyMap1.entrySet()) {
+            total1 += entry.getValue();
+            if (keyMap2.containsKey(entry.getKey())) {
+                tfidf1 += entry.getValue();
+            }
+        }
+        for (Map.Entry<String, Double> entry : keyMap2.entrySet()) {
+            total2 += entry.getValue();
+            if (keyMap1.containsKey(entry.getKey())) {
+                tfidf2 += entry.getValue();
+            }
+        }
+        total1 = (total1 == 0 ? 1 : total1);
+        total2 = (total2 == 0 ? 1 : total2);
+        return (tfidf1 / total1 + tfidf2 / total2) / 2;
+    }
+
+    private static Set<String> referenceRemoveList(List<Keyword> keys1, List<Keyword> keys2) {
+        Map<String, Double> keyMap1 = keys1.stream().collect(Collectors.toMap(Keyword::getName, Keyword::getTfidfvalue));
+        Map<String, Double> keyMap2 = keys2.stream().collect(Collectors.toMap(Keyword::getName, Keyword::getTfidfvalue));
+        return new HashSet<>(referenceRemoveList(keyMap1, keyMap2));
+    }
+
+    /**
+     * getRemoveList before keywords were numbered
+     */
+    private static List<String> referenceRemoveList(Map<String, Double> keyMap1, Map<String, Double> keyMap2) {
+        List<String> toRemoveList1 = new ArrayList<>();
+        for (String s : keyMap1.keySet()) {
+            for (String s2 : keyMap1.keySet()) {
+                if (s2.equals(s)) {
+                    continue;
+                }
+                if (s2.contains(s)) {
+                    if (keyMap2.containsKey(s2)) {
+                        toRemoveList1.add(s);
+                    } else if (keyMap2.containsKey(s)) {
+                        toRemoveList1.add(s2);
+                    } else {
+                        toRemoveList1.add(s);
+                    }
+                }
+            }
+        }
+        return toRemoveList1;
+    }
+
+    /**
+     * simplexKeywordSim before keywords were numbered
+     */
+    private static double referenceSimplex(List<Keyword> faq, List<Keyword> q) {
+        List<String> faqNames = faq.stream().map(Keyword::getName).collect(Collectors.toList());
+        double faqTotalTfidf = faq.stream().mapToDouble(Keyword::getTfidfvalue).sum();
+        double result = 0;
+        for (Keyword key : q) {
+            result += faqNames.contains(key.getName()) ? key.getTfidfvalue() : -key.getTfidfvalue();
+        }
+        if (result > faqTotalTfidf) {
+            result = faqTotalTfidf;
+        } else if (result < 0) {
+            result = 0;
+        }
+        if (faqTotalTfidf <= 0) {
+            faqTotalTfidf = 1.0;
+        }
+        return result / faqTotalTfidf;
+    }
+
+    /**
+     * duplexKeywordSim before keywords were numbered
+     */
+    private static double referenceDuplex(List<Keyword> keys1, List<Keyword> keys2) {
+        List<String> names1 = keys1.stream().map(Keyword::getName).collect(Collectors.toList());
+        List<String> names2 = keys2.stream().map(Keyword::getName).collect(Collectors.toList());
+        double result = 0.0;
+        double total = 0.0;
+        for (Keyword key : keys1) {
+            result += names2.contains(key.getName()) ? key.getTfidfvalue() : -2 * key.getTfidfvalue();
+            total += key.getTfidfvalue();
+        }
+        for (Keyword key : keys2) {
+            result += names1.contains(key.getName()) ? key.getTfidfvalue() : -2 * key.getTfidfvalue();
+            total += key.getTfidfvalue();
+        }
+        if (total == 0) {
+            total = 1.0;
+        }
+        double min = (-2) * total;
+        return (result - min) / (total - min);
+    }
+
+    private static TermDictionary dictionaryOf(List<Keyword> list) {
+        TermDictionary dictionary = new TermDictionary();
+        list.forEach(k -> dictionary.add(k.getName()));
+        return dictionary;
+    }
+
+    private static List<Keyword> keywords(Object... nameValues) {
+        List<Keyword> list = new ArrayList<>();
+        for (int i = 0; i < nameValues.length; i += 2) {
+            list.add(new Keyword((String) nameValues[i], (Double) nameValues[i + 1]));
+        }
+        return list;
+    }
+
+    /**
+     * distinct names with one decimal weights
+     */
+    private static List<Keyword> randomKeywords(Random random) {
+        List<String> names = new ArrayList<>(Arrays.asList(VOCABULARY));
+        Collections.shuffle(names, random);
+        List<Keyword> list = new ArrayList<>();
+        int size = random.nextInt(7);
+        for (int i = 0; i < size; i++) {
+            list.add(new Keyword(names.get(i), 0.1 + random.nextInt(50) / 10.0));
+        }
+        return list;
+    }
+
+    /**
+     * first keyword of each name
+     */
+    private static List<Keyword> distinct(List<Keyword> list) {
+        Set<String> seen = new HashSet<>();
+        return list.stream().filter(k -> seen.add(k.getName())).collect(Collectors.toList());
+    }
+}